@@ -0,0 +1,29 @@
+package com.tw.go.plugin.benchmark;
+
+// Entry point of the benchmark task. Each case is warmed up before it is timed; the numbers are only meant to
+// compare approaches on the same machine, not as absolute figures.
+public class Benchmarks {
+    private static final int WARM_UP_ITERATIONS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        SessionStateCodecBenchmark.run();
+        PluginStartupBenchmark.run();
+        ProfileFieldExtractorBenchmark.run();
+    }
+
+    public static void time(String name, int iterations, Task task) throws Exception {
+        for (int i = 0; i < Math.min(iterations, WARM_UP_ITERATIONS); i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%-60s %10.1f us/op", name, elapsed / 1000.0 / iterations));
+    }
+
+    public interface Task {
+        void run() throws Exception;
+    }
+}
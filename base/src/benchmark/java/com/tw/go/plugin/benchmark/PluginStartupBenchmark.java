@@ -0,0 +1,29 @@
+package com.tw.go.plugin.benchmark;
+
+import com.tw.go.plugin.OAuthLoginPlugin;
+import com.tw.go.plugin.util.PluginDescriptor;
+
+// Plugin construction as GoCD does it at boot. The first instance pays for loading the descriptor and the provider
+// classes; later ones show what is left per instance once the descriptor is shared.
+public class PluginStartupBenchmark {
+    private static final int ITERATIONS = 200;
+
+    public static void run() throws Exception {
+        long start = System.nanoTime();
+        new OAuthLoginPlugin();
+        System.out.println(String.format("First plugin construction took %.1f ms", (System.nanoTime() - start) / 1000000.0));
+
+        Benchmarks.time("plugin construction with the shared descriptor", ITERATIONS, new Benchmarks.Task() {
+            @Override
+            public void run() throws Exception {
+                new OAuthLoginPlugin();
+            }
+        });
+        Benchmarks.time("descriptor load from the classpath resources", ITERATIONS, new Benchmarks.Task() {
+            @Override
+            public void run() throws Exception {
+                PluginDescriptor.load();
+            }
+        });
+    }
+}
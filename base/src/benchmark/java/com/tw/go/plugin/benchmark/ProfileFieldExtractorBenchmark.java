@@ -0,0 +1,52 @@
+package com.tw.go.plugin.benchmark;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.tw.go.plugin.util.ProfileFieldExtractor;
+
+import java.io.StringReader;
+
+// Reading four profile fields from a ~100 KB GitLab style /user response with 1000 identities: the streaming
+// extractor, which stops once it has them, against parsing the whole response into a tree.
+public class ProfileFieldExtractorBenchmark {
+    private static final int ITERATIONS = 5000;
+
+    public static void run() throws Exception {
+        final String profile = largeProfile();
+        final ProfileFieldExtractor extractor = new ProfileFieldExtractor("id", "username", "name", "email");
+        final ProfileFieldExtractor scattered = new ProfileFieldExtractor("id", "name", "two_factor_enabled");
+        final JsonParser parser = new JsonParser();
+
+        System.out.println(String.format("Profile payload: %d chars", profile.length()));
+        Benchmarks.time("profile fields: streaming extractor", ITERATIONS, new Benchmarks.Task() {
+            @Override
+            public void run() throws Exception {
+                extractor.extract(new StringReader(profile));
+            }
+        });
+        Benchmarks.time("profile fields: fields scattered through the response", ITERATIONS, new Benchmarks.Task() {
+            @Override
+            public void run() throws Exception {
+                scattered.extract(new StringReader(profile));
+            }
+        });
+        Benchmarks.time("profile fields: full tree", ITERATIONS, new Benchmarks.Task() {
+            @Override
+            public void run() throws Exception {
+                JsonObject tree = parser.parse(profile).getAsJsonObject();
+                tree.get("id").getAsString();
+                tree.get("username").getAsString();
+                tree.get("name").getAsString();
+                tree.get("email").getAsString();
+            }
+        });
+    }
+
+    private static String largeProfile() {
+        StringBuilder profile = new StringBuilder("{\"id\":42,\"username\":\"bob\",\"email\":\"bob@example.com\",\"name\":\"Bob\",\"state\":\"active\",\"identities\":[");
+        for (int i = 0; i < 1000; i++) {
+            profile.append(i == 0 ? "" : ",").append(String.format("{\"provider\":\"ldap%d\",\"extern_uid\":\"uid=bob,ou=people%d,dc=example,dc=com\",\"saml_provider_id\":null}", i, i));
+        }
+        return profile.append("],\"bio\":\"\",\"two_factor_enabled\":true}").toString();
+    }
+}
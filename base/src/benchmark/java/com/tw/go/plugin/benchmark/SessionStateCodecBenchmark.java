@@ -0,0 +1,33 @@
+package com.tw.go.plugin.benchmark;
+
+import com.tw.go.plugin.session.CompactSessionStateCodec;
+import com.tw.go.plugin.session.SerializedManagerPayload;
+import com.tw.go.plugin.session.SessionState;
+import org.brickred.socialauth.SocialAuthManager;
+
+// The compact session state against the serialized SocialAuthManager the plugin stored before it.
+public class SessionStateCodecBenchmark {
+    private static final int ITERATIONS = 20000;
+
+    public static void run() throws Exception {
+        final SessionState sessionState = SessionState.create("googleplus", "https://go.example.com/go/plugin/interact/google.oauth.login/authenticate");
+        final CompactSessionStateCodec codec = new CompactSessionStateCodec();
+        final String compact = codec.encode(sessionState);
+        final SocialAuthManager manager = SerializedManagerPayload.manager(sessionState.getSuccessUrl());
+        final String serialized = SerializedManagerPayload.encode(manager);
+
+        System.out.println(String.format("Session payload: %d chars compact, %d chars serialized manager", compact.length(), serialized.length()));
+        Benchmarks.time("session state: compact encode + decode", ITERATIONS, new Benchmarks.Task() {
+            @Override
+            public void run() throws Exception {
+                codec.decode(codec.encode(sessionState));
+            }
+        });
+        Benchmarks.time("session state: serialized manager encode + decode", ITERATIONS, new Benchmarks.Task() {
+            @Override
+            public void run() throws Exception {
+                SerializedManagerPayload.decode(SerializedManagerPayload.encode(manager));
+            }
+        });
+    }
+}
@@ -9,16 +9,33 @@ import com.thoughtworks.go.plugin.api.request.GoApiRequest;
 import com.thoughtworks.go.plugin.api.request.GoPluginApiRequest;
 import com.thoughtworks.go.plugin.api.response.GoApiResponse;
 import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
+import com.tw.go.plugin.cache.PluginSettingsCache;
+import com.tw.go.plugin.directory.DirectorySource;
+import com.tw.go.plugin.directory.DirectorySync;
+import com.tw.go.plugin.directory.KnownUsersStore;
+import com.tw.go.plugin.directory.UserDirectory;
+import com.tw.go.plugin.directory.UserSearchCache;
+import com.tw.go.plugin.message.AuthenticateUserRequest;
+import com.tw.go.plugin.message.PluginIdRequest;
+import com.tw.go.plugin.message.SearchUserRequest;
+import com.tw.go.plugin.message.SessionPutRequest;
+import com.tw.go.plugin.message.UserMessage;
+import com.tw.go.plugin.message.ValidatePluginSettingsRequest;
+import com.tw.go.plugin.provider.CachingProvider;
 import com.tw.go.plugin.provider.Provider;
+import com.tw.go.plugin.session.CompactSessionStateCodec;
+import com.tw.go.plugin.session.SessionState;
+import com.tw.go.plugin.session.SessionStateCodec;
+import com.tw.go.plugin.session.SignedSessionStateCodec;
 import com.tw.go.plugin.util.FieldValidator;
 import com.tw.go.plugin.util.JSONUtils;
-import com.tw.go.plugin.util.Util;
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.io.IOUtils;
+import com.tw.go.plugin.util.PluginDescriptor;
 import org.brickred.socialauth.*;
 
-import java.io.*;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Constructor;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static java.util.Arrays.asList;
@@ -44,6 +61,8 @@ public class OAuthLoginPlugin implements GoPlugin {
     public static final String PLUGIN_SETTINGS_USERNAME_REGEX = "username_regex";
     public static final String PLUGIN_SETTINGS_ALLOWED_DOMAINS = "allowed_domains";
     public static final String PLUGIN_SETTINGS_ORG_NAME = "organization_name";
+    public static final String PLUGIN_SETTINGS_STATELESS_LOGIN = "stateless_login";
+    public static final String PLUGIN_SETTINGS_CACHE_AUTHORIZATION = "cache_authorization";
 
     public static final String PLUGIN_SETTINGS_GET_CONFIGURATION = "go.plugin-settings.get-configuration";
     public static final String PLUGIN_SETTINGS_GET_VIEW = "go.plugin-settings.get-view";
@@ -52,6 +71,7 @@ public class OAuthLoginPlugin implements GoPlugin {
     public static final String SEARCH_USER = "go.authentication.search-user";
     public static final String WEB_REQUEST_INDEX = "index";
     public static final String WEB_REQUEST_AUTHENTICATE = "authenticate";
+    public static final String WEB_REQUEST_IMAGE = "image";
 
     public static final String GET_PLUGIN_SETTINGS = "go.processor.plugin-settings.get";
     public static final String GO_REQUEST_SESSION_PUT = "go.processor.session.put";
@@ -59,53 +79,133 @@ public class OAuthLoginPlugin implements GoPlugin {
     public static final String GO_REQUEST_SESSION_REMOVE = "go.processor.session.remove";
     public static final String GO_REQUEST_AUTHENTICATE_USER = "go.processor.authentication.authenticate-user";
 
+    public static final String SESSION_STATE_KEY = "oauth-state";
+
+    public static final int SEARCH_RESULT_LIMIT = Integer.getInteger("gocd.oauth.login.search.limit", 10);
+
     public static final int SUCCESS_RESPONSE_CODE = 200;
     public static final int REDIRECT_RESPONSE_CODE = 302;
+    public static final int NOT_MODIFIED_RESPONSE_CODE = 304;
     public static final int UNAUTHORIZED_RESPONSE_CODE = 401;
     public static final int NOT_FOUND_ERROR_RESPONSE_CODE = 404;
     public static final int INTERNAL_ERROR_RESPONSE_CODE = 500;
 
-    private Provider provider;
+    private Provider<PluginSettings> provider;
+    private CachingProvider<PluginSettings> cachingProvider;
     private GoApplicationAccessor goApplicationAccessor;
-
+    private final Map<String, RequestHandler> requestHandlers = new HashMap<String, RequestHandler>();
+    private PluginSettingsCache<PluginSettings> pluginSettingsCache;
+    private SessionStateCodec sessionStateCodec = new CompactSessionStateCodec();
+    private SocialAuthConfig socialAuthConfig;
+    private String socialAuthConfigFingerprint;
+    private final UserDirectory userDirectory = new UserDirectory();
+    private final UserSearchCache searchCache = new UserSearchCache();
+    private KnownUsersStore knownUsers;
+    private String userDirectoryFingerprint;
+    private DirectorySync directorySync;
+
+    @SuppressWarnings("unchecked")
     public OAuthLoginPlugin() {
         try {
-            Constructor<?> constructor = Util.providerClass().getConstructor();
-            provider = (Provider) constructor.newInstance();
+            Constructor<?> constructor = PluginDescriptor.get().providerClass().getConstructor();
+            provider = (Provider<PluginSettings>) constructor.newInstance();
+            cachingProvider = new CachingProvider<PluginSettings>(provider);
+            knownUsers = KnownUsersStore.forPlugin(provider.getPluginId());
         } catch (Exception e) {
             throw new RuntimeException("Could not create provider", e);
         }
+        pluginSettingsCache = new PluginSettingsCache<PluginSettings>(provider, new PluginSettingsCache.Loader() {
+            @Override
+            public Map<String, String> load() {
+                return fetchPluginSettings();
+            }
+        });
+        registerRequestHandlers();
+    }
+
+    private void registerRequestHandlers() {
+        final GoPluginApiResponse pluginSettingsConfiguration = handleGetPluginSettingsConfiguration();
+        final GoPluginApiResponse pluginConfiguration = renderJSON(SUCCESS_RESPONSE_CODE, getPluginConfiguration());
+        final GoPluginApiResponse pluginSettingsView = handleGetPluginSettingsView();
+        final GoPluginApiResponse image = render(SUCCESS_RESPONSE_CODE, imageHeaders(), imageBody());
+        final GoPluginApiResponse imageNotModified = render(NOT_MODIFIED_RESPONSE_CODE, imageHeaders(), null);
+
+        requestHandlers.put(PLUGIN_SETTINGS_GET_CONFIGURATION, new RequestHandler() {
+            @Override
+            public GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest) {
+                return pluginSettingsConfiguration;
+            }
+        });
+        requestHandlers.put(PLUGIN_SETTINGS_GET_VIEW, new RequestHandler() {
+            @Override
+            public GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest) {
+                return pluginSettingsView;
+            }
+        });
+        requestHandlers.put(PLUGIN_SETTINGS_VALIDATE_CONFIGURATION, new RequestHandler() {
+            @Override
+            public GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest) {
+                return handleValidatePluginSettingsConfiguration(goPluginApiRequest);
+            }
+        });
+        requestHandlers.put(PLUGIN_CONFIGURATION, new RequestHandler() {
+            @Override
+            public GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest) {
+                return pluginConfiguration;
+            }
+        });
+        requestHandlers.put(SEARCH_USER, new RequestHandler() {
+            @Override
+            public GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest) {
+                return handleSearchUserRequest(goPluginApiRequest);
+            }
+        });
+        requestHandlers.put(WEB_REQUEST_INDEX, new RequestHandler() {
+            @Override
+            public GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest) {
+                return handleSetupLoginWebRequest(goPluginApiRequest);
+            }
+        });
+        requestHandlers.put(WEB_REQUEST_AUTHENTICATE, new RequestHandler() {
+            @Override
+            public GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest) {
+                return handleAuthenticateWebRequest(goPluginApiRequest);
+            }
+        });
+        requestHandlers.put(WEB_REQUEST_IMAGE, new RequestHandler() {
+            @Override
+            public GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest) {
+                return handleImageWebRequest(goPluginApiRequest, image, imageNotModified);
+            }
+        });
     }
 
     @Override
     public void initializeGoApplicationAccessor(GoApplicationAccessor goApplicationAccessor) {
         this.goApplicationAccessor = goApplicationAccessor;
+        if (provider instanceof DirectorySource && directorySync == null) {
+            directorySync = new DirectorySync((DirectorySource) provider, new DirectorySync.Target() {
+                @Override
+                public PluginSettings pluginSettings() throws Exception {
+                    return getPluginSettings();
+                }
+
+                @Override
+                public UserDirectory userDirectory(PluginSettings pluginSettings) {
+                    return getUserDirectory(pluginSettings);
+                }
+            });
+            directorySync.start();
+        }
     }
 
     @Override
     public GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest) {
-        String requestName = goPluginApiRequest.requestName();
-        if (requestName.equals(PLUGIN_SETTINGS_GET_CONFIGURATION)) {
-            return handleGetPluginSettingsConfiguration();
-        } else if (requestName.equals(PLUGIN_SETTINGS_GET_VIEW)) {
-            try {
-                return handleGetPluginSettingsView();
-            } catch (IOException e) {
-                return renderJSON(500, String.format("Failed to find template: %s", e.getMessage()));
-            }
-        } else if (requestName.equals(PLUGIN_SETTINGS_VALIDATE_CONFIGURATION)) {
-            return handleValidatePluginSettingsConfiguration(goPluginApiRequest);
-        } else if (requestName.equals(PLUGIN_CONFIGURATION)) {
-            Map<String, Object> configuration = getPluginConfiguration();
-            return renderJSON(SUCCESS_RESPONSE_CODE, configuration);
-        } else if (requestName.equals(SEARCH_USER)) {
-            return handleSearchUserRequest(goPluginApiRequest);
-        } else if (requestName.equals(WEB_REQUEST_INDEX)) {
-            return handleSetupLoginWebRequest(goPluginApiRequest);
-        } else if (requestName.equals(WEB_REQUEST_AUTHENTICATE)) {
-            return handleAuthenticateWebRequest(goPluginApiRequest);
+        RequestHandler requestHandler = requestHandlers.get(goPluginApiRequest.requestName());
+        if (requestHandler == null) {
+            return renderJSON(NOT_FOUND_ERROR_RESPONSE_CODE, null);
         }
-        return renderJSON(NOT_FOUND_ERROR_RESPONSE_CODE, null);
+        return requestHandler.handle(goPluginApiRequest);
     }
 
     @Override
@@ -131,15 +231,20 @@ public class OAuthLoginPlugin implements GoPlugin {
         return fieldProperties;
     }
 
-    private GoPluginApiResponse handleGetPluginSettingsView() throws IOException {
+    private GoPluginApiResponse handleGetPluginSettingsView() {
+        String template = PluginDescriptor.get().getSettingsTemplate();
+        if (template == null) {
+            return renderJSON(500, "Failed to find template: /plugin-settings.template.html");
+        }
         Map<String, Object> response = new HashMap<String, Object>();
-        response.put("template", IOUtils.toString(getClass().getResourceAsStream("/plugin-settings.template.html"), "UTF-8"));
+        response.put("template", template);
         return renderJSON(SUCCESS_RESPONSE_CODE, response);
     }
 
     private GoPluginApiResponse handleValidatePluginSettingsConfiguration(GoPluginApiRequest goPluginApiRequest) {
-        Map<String, Object> responseMap = (Map<String, Object>) JSONUtils.fromJSON(goPluginApiRequest.requestBody());
-        final Map<String, String> configuration = keyValuePairs(responseMap, "plugin-settings");
+        ValidatePluginSettingsRequest request = JSONUtils.fromJSON(goPluginApiRequest.requestBody(), ValidatePluginSettingsRequest.class);
+        final Map<String, String> configuration = request.toConfiguration();
+        pluginSettingsCache.expect(configuration);
         List<Map<String, Object>> response = new ArrayList<Map<String, Object>>();
 
         validate(response, new FieldValidator() {
@@ -184,43 +289,101 @@ public class OAuthLoginPlugin implements GoPlugin {
     private Map<String, Object> getPluginConfiguration() {
         Map<String, Object> configuration = new HashMap<String, Object>();
         configuration.put("display-name", provider.getName());
-        configuration.put("display-image-url", provider.getImageURL());
+        configuration.put("display-image-url", String.format("/go/plugin/interact/%s/%s", provider.getPluginId(), WEB_REQUEST_IMAGE));
         configuration.put("supports-web-based-authentication", true);
         configuration.put("supports-password-based-authentication", false);
         return configuration;
     }
 
+    private GoPluginApiResponse handleImageWebRequest(GoPluginApiRequest goPluginApiRequest, GoPluginApiResponse image, GoPluginApiResponse imageNotModified) {
+        Map<String, String> requestHeaders = goPluginApiRequest.requestHeaders();
+        if (requestHeaders != null) {
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                if ("If-None-Match".equalsIgnoreCase(header.getKey()) && header.getValue() != null && header.getValue().contains(PluginDescriptor.get().getImageETag())) {
+                    return imageNotModified;
+                }
+            }
+        }
+        return image;
+    }
+
+    private Map<String, String> imageHeaders() {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Content-Type", "image/png");
+        headers.put("Cache-Control", "public, max-age=604800");
+        headers.put("ETag", PluginDescriptor.get().getImageETag());
+        return Collections.unmodifiableMap(headers);
+    }
+
+    // Web responses are strings. Without a charset in the content type the servlet writer encodes them as ISO-8859-1,
+    // which maps every char back to the byte it was decoded from, so the PNG goes out unchanged.
+    private String imageBody() {
+        return new String(PluginDescriptor.get().getImage(), StandardCharsets.ISO_8859_1);
+    }
+
     private GoPluginApiResponse handleSearchUserRequest(GoPluginApiRequest goPluginApiRequest) {
-        Map<String, String> requestBodyMap = (Map<String, String>) JSONUtils.fromJSON(goPluginApiRequest.requestBody());
-        String searchTerm = requestBodyMap.get("search-term");
-        PluginSettings pluginSettings = getPluginSettings();
-        List<User> users = provider.searchUser(pluginSettings, searchTerm);
-        if (users == null || users.isEmpty()) {
+        SearchUserRequest request = JSONUtils.fromJSON(goPluginApiRequest.requestBody(), SearchUserRequest.class);
+        String searchTerm = request.getSearchTerm();
+        final PluginSettings pluginSettings = getPluginSettings();
+        final UserDirectory directory = getUserDirectory(pluginSettings);
+        List<User> users = directory.search(searchTerm, SEARCH_RESULT_LIMIT);
+        // The directory only answers alone when a full sync made it complete or it filled the page; otherwise it holds
+        // just past logins and search results, so upstream is asked as well.
+        if (users.size() < SEARCH_RESULT_LIMIT && !(directorySync != null && directorySync.isComplete(pluginSettings))) {
+            List<User> found = searchCache.search(pluginSettings.getFingerprint(), searchTerm, SEARCH_RESULT_LIMIT, new UserSearchCache.Search() {
+                @Override
+                public List<User> search(String term) {
+                    List<User> found = provider.searchUser(pluginSettings, term);
+                    if (found != null) {
+                        directory.addAll(found);
+                    }
+                    return found;
+                }
+            });
+            users = merge(users, found);
+        }
+        if (users.isEmpty()) {
             return renderJSON(SUCCESS_RESPONSE_CODE, null);
         } else {
-            List<Map> searchResults = new ArrayList<Map>();
-            for (User user : users) {
-                searchResults.add(getUserMap(user));
+            return render(SUCCESS_RESPONSE_CODE, null, JSONUtils.usersToJSON(users));
+        }
+    }
+
+    private List<User> merge(List<User> local, List<User> upstream) {
+        if (upstream == null || upstream.isEmpty()) {
+            return local;
+        }
+        Map<String, User> merged = new LinkedHashMap<String, User>();
+        for (User user : local) {
+            merged.put(user.getUsername(), user);
+        }
+        for (User user : upstream) {
+            if (merged.size() >= SEARCH_RESULT_LIMIT) {
+                break;
+            }
+            if (!merged.containsKey(user.getUsername())) {
+                merged.put(user.getUsername(), user);
             }
-            return renderJSON(SUCCESS_RESPONSE_CODE, searchResults);
         }
+        return new ArrayList<User>(merged.values());
     }
 
     private GoPluginApiResponse handleSetupLoginWebRequest(GoPluginApiRequest goPluginApiRequest) {
         try {
             PluginSettings pluginSettings = getPluginSettings();
-            SocialAuthConfig socialAuthConfiguration = SocialAuthConfig.getDefault();
-
-            Permission perm = provider.getAuthPermission();
-            Properties oauthConsumerProperties = provider.configure(pluginSettings);
-            socialAuthConfiguration.load(oauthConsumerProperties);
-            SocialAuthManager manager = new SocialAuthManager();
-            manager.setSocialAuthConfig(socialAuthConfiguration);
-            String redirectURL = manager.getAuthenticationUrl(provider.getProviderName(), getURL(pluginSettings.getServerBaseURL()), perm);
-            store(manager);
+            SocialAuthManager manager = createSocialAuthManager(pluginSettings);
+            SessionState sessionState = SessionState.create(provider.getProviderName(), getURL(pluginSettings.getServerBaseURL()));
+            String redirectURL = manager.getAuthenticationUrl(sessionState.getProviderId(), sessionState.getSuccessUrl(), provider.getAuthPermission());
+            String state;
+            if (isSettingEnabled(PLUGIN_SETTINGS_STATELESS_LOGIN)) {
+                state = new SignedSessionStateCodec(pluginSettings.getConsumerSecret()).encode(sessionState);
+            } else {
+                store(sessionState);
+                state = sessionState.getState();
+            }
 
             Map<String, String> responseHeaders = new HashMap<String, String>();
-            responseHeaders.put("Location", redirectURL);
+            responseHeaders.put("Location", withState(redirectURL, state));
             return renderJSON(REDIRECT_RESPONSE_CODE, responseHeaders, null);
         } catch (Exception e) {
             LOGGER.error("Error occurred while OAuth setup.", e);
@@ -229,29 +392,54 @@ public class OAuthLoginPlugin implements GoPlugin {
     }
 
     public PluginSettings getPluginSettings() {
-        Map<String, Object> requestMap = new HashMap<String, Object>();
-        requestMap.put("plugin-id", provider.getPluginId());
-        GoApiResponse response = goApplicationAccessor.submit(createGoApiRequest(GET_PLUGIN_SETTINGS, JSONUtils.toJSON(requestMap)));
+        return pluginSettingsCache.get();
+    }
+
+    public String getPluginSettingsFingerprint() {
+        return pluginSettingsCache.fingerprint();
+    }
+
+    private Map<String, String> fetchPluginSettings() {
+        GoApiResponse response = goApplicationAccessor.submit(createGoApiRequest(GET_PLUGIN_SETTINGS, JSONUtils.toJSON(new PluginIdRequest(provider.getPluginId()))));
         if (response.responseBody() == null || response.responseBody().trim().isEmpty()) {
             throw new RuntimeException("plugin is not configured. please provide plugin settings.");
         }
-        return provider.pluginSettings((Map<String, String>) JSONUtils.fromJSON(response.responseBody()));
+        return JSONUtils.fromJSON(response.responseBody(), JSONUtils.STRING_MAP);
     }
 
     private GoPluginApiResponse handleAuthenticateWebRequest(final GoPluginApiRequest goPluginApiRequest) {
+        boolean statelessLogin = false;
         try {
             PluginSettings pluginSettings = getPluginSettings();
-            SocialAuthManager manager = read();
-            if (manager == null) {
-                throw new RuntimeException("socialauth manager not set");
+            statelessLogin = isSettingEnabled(PLUGIN_SETTINGS_STATELESS_LOGIN);
+            Map<String, String> requestParameters = goPluginApiRequest.requestParameters();
+            SessionState sessionState;
+            if (statelessLogin) {
+                sessionState = new SignedSessionStateCodec(pluginSettings.getConsumerSecret()).decode(requestParameters.get("state"));
+            } else {
+                sessionState = read();
+                if (sessionState == null) {
+                    throw new RuntimeException("oauth session state not set");
+                }
+                if (!sessionState.getState().equals(requestParameters.get("state"))) {
+                    throw new RuntimeException("oauth state does not match");
+                }
             }
 
-            AuthProvider authProvider = manager.connect(goPluginApiRequest.requestParameters());
+            SocialAuthManager manager = createSocialAuthManager(pluginSettings);
+            manager.getAuthenticationUrl(sessionState.getProviderId(), sessionState.getSuccessUrl(), provider.getAuthPermission());
+            AuthProvider authProvider = manager.connect(requestParameters);
             Profile profile = authProvider.getUserProfile();
             User user = provider.getUser(profile);
+            if (user != null && authProvider.getAccessGrant() != null) {
+                user.setAccessToken(authProvider.getAccessGrant().getKey());
+            }
 
-            if (provider.authorize(pluginSettings, user)) {
+            Provider<PluginSettings> authorizer = isSettingEnabled(PLUGIN_SETTINGS_CACHE_AUTHORIZATION) ? cachingProvider : provider;
+            if (authorizer.authorize(pluginSettings, user)) {
                 authenticateUser(user);
+                knownUsers.record(user);
+                getUserDirectory(pluginSettings).addKnown(Collections.singletonList(user));
             }
 
             Map<String, String> responseHeaders = new HashMap<String, String>();
@@ -261,70 +449,75 @@ public class OAuthLoginPlugin implements GoPlugin {
             LOGGER.error("Error occurred while OAuth authenticate.", e);
             return renderJSON(INTERNAL_ERROR_RESPONSE_CODE, null);
         } finally {
-            delete();
+            if (!statelessLogin) {
+                delete();
+            }
         }
     }
 
-    private void  store(SocialAuthManager socialAuthManager) {
-        Map<String, Object> requestMap = new HashMap<String, Object>();
-        requestMap.put("plugin-id", provider.getPluginId());
-        Map<String, Object> sessionData = new HashMap<String, Object>();
-        String socialAuthManagerStr = serializeObject(socialAuthManager);
-        sessionData.put("social-auth-manager", socialAuthManagerStr);
-        requestMap.put("session-data", sessionData);
-        GoApiRequest goApiRequest = createGoApiRequest(GO_REQUEST_SESSION_PUT, JSONUtils.toJSON(requestMap));
-        GoApiResponse response = goApplicationAccessor.submit(goApiRequest);
-        // handle error
+    private boolean isSettingEnabled(String key) {
+        return "on".equals(pluginSettingsCache.current().getValues().get(key));
     }
 
-    private String serializeObject(SocialAuthManager socialAuthManager) {
-        try {
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-            objectOutputStream.writeObject(socialAuthManager);
-            objectOutputStream.flush();
-            byte[] bytes = byteArrayOutputStream.toByteArray();
-            return new String(Base64.encodeBase64(bytes));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    private SocialAuthManager createSocialAuthManager(PluginSettings pluginSettings) throws Exception {
+        SocialAuthManager manager = new SocialAuthManager();
+        manager.setSocialAuthConfig(getSocialAuthConfig(pluginSettings));
+        return manager;
+    }
+
+    private synchronized SocialAuthConfig getSocialAuthConfig(PluginSettings pluginSettings) throws Exception {
+        if (socialAuthConfig == null || !pluginSettings.getFingerprint().equals(socialAuthConfigFingerprint)) {
+            SocialAuthConfig configuration = SocialAuthConfig.getDefault();
+            configuration.load(provider.configure(pluginSettings));
+            socialAuthConfig = configuration;
+            socialAuthConfigFingerprint = pluginSettings.getFingerprint();
+        }
+        return socialAuthConfig;
+    }
+
+    private synchronized UserDirectory getUserDirectory(PluginSettings pluginSettings) {
+        if (!pluginSettings.getFingerprint().equals(userDirectoryFingerprint)) {
+            userDirectory.clear();
+            userDirectory.addKnown(knownUsers.users());
+            userDirectoryFingerprint = pluginSettings.getFingerprint();
         }
+        return userDirectory;
     }
 
-    private SocialAuthManager read() {
-        Map<String, Object> requestMap = new HashMap<String, Object>();
-        requestMap.put("plugin-id", provider.getPluginId());
-        GoApiRequest goApiRequest = createGoApiRequest(GO_REQUEST_SESSION_GET, JSONUtils.toJSON(requestMap));
+    private String withState(String redirectURL, String state) throws UnsupportedEncodingException {
+        String separator = redirectURL.contains("?") ? "&" : "?";
+        return redirectURL + separator + "state=" + URLEncoder.encode(state, "UTF-8");
+    }
+
+    private void store(SessionState sessionState) {
+        Map<String, String> sessionData = new HashMap<String, String>();
+        sessionData.put(SESSION_STATE_KEY, sessionStateCodec.encode(sessionState));
+        GoApiRequest goApiRequest = createGoApiRequest(GO_REQUEST_SESSION_PUT, JSONUtils.toJSON(new SessionPutRequest(provider.getPluginId(), sessionData)));
         GoApiResponse response = goApplicationAccessor.submit(goApiRequest);
         // handle error
-        String responseBody = response.responseBody();
-        Map<String, String> sessionData = (Map<String, String>) JSONUtils.fromJSON(responseBody);
-        String socialAuthManagerStr = sessionData.get("social-auth-manager");
-        return deserializeObject(socialAuthManagerStr);
     }
 
-    private SocialAuthManager deserializeObject(String socialAuthManagerStr) {
-        try {
-            byte bytes[] = Base64.decodeBase64(socialAuthManagerStr.getBytes());
-            ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-            ObjectInputStream objectInputStream = new ObjectInputStream(byteArrayInputStream);
-            return (SocialAuthManager) objectInputStream.readObject();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    private SessionState read() {
+        GoApiRequest goApiRequest = createGoApiRequest(GO_REQUEST_SESSION_GET, JSONUtils.toJSON(new PluginIdRequest(provider.getPluginId())));
+        GoApiResponse response = goApplicationAccessor.submit(goApiRequest);
+        // handle error
+        String responseBody = response.responseBody();
+        Map<String, String> sessionData = JSONUtils.fromJSON(responseBody, JSONUtils.STRING_MAP);
+        if (sessionData == null || sessionData.get(SESSION_STATE_KEY) == null) {
+            return null;
         }
+        return sessionStateCodec.decode(sessionData.get(SESSION_STATE_KEY));
     }
 
     private void delete() {
-        Map<String, Object> requestMap = new HashMap<String, Object>();
-        requestMap.put("plugin-id", provider.getPluginId());
-        GoApiRequest goApiRequest = createGoApiRequest(GO_REQUEST_SESSION_REMOVE, JSONUtils.toJSON(requestMap));
+        GoApiRequest goApiRequest = createGoApiRequest(GO_REQUEST_SESSION_REMOVE, JSONUtils.toJSON(new PluginIdRequest(provider.getPluginId())));
         GoApiResponse response = goApplicationAccessor.submit(goApiRequest);
         // handle error
     }
 
     private void authenticateUser(User user) {
-        final Map<String, Object> userMap = new HashMap<String, Object>();
-        userMap.put("user", getUserMap(user));
-        GoApiRequest authenticateUserRequest = createGoApiRequest(GO_REQUEST_AUTHENTICATE_USER, JSONUtils.toJSON(userMap));
+        AuthenticateUserRequest request = new AuthenticateUserRequest(new UserMessage(user));
+        GoApiRequest authenticateUserRequest = createGoApiRequest(GO_REQUEST_AUTHENTICATE_USER, JSONUtils.toJSON(request));
         GoApiResponse authenticateUserResponse = goApplicationAccessor.submit(authenticateUserRequest);
         // handle error
     }
@@ -333,25 +526,6 @@ public class OAuthLoginPlugin implements GoPlugin {
         return String.format("%s/go/plugin/interact/%s/authenticate", serverBaseURL, provider.getPluginId());
     }
 
-    private Map<String, String> getUserMap(User user) {
-        Map<String, String> userMap = new HashMap<String, String>();
-        userMap.put("username", user.getUsername());
-        userMap.put("display-name", user.getDisplayName());
-        userMap.put("email-id", user.getEmailId());
-        return userMap;
-    }
-
-    private Map<String, String> keyValuePairs(Map<String, Object> map, String mainKey) {
-        Map<String, String> keyValuePairs = new HashMap<String, String>();
-        Map<String, Object> fieldsMap = (Map<String, Object>) map.get(mainKey);
-        for (String field : fieldsMap.keySet()) {
-            Map<String, Object> fieldProperties = (Map<String, Object>) fieldsMap.get(field);
-            String value = (String) fieldProperties.get("value");
-            keyValuePairs.put(field, value);
-        }
-        return keyValuePairs;
-    }
-
     private GoPluginIdentifier getGoPluginIdentifier() {
         return new GoPluginIdentifier(EXTENSION_NAME, goSupportedVersions);
     }
@@ -395,7 +569,10 @@ public class OAuthLoginPlugin implements GoPlugin {
     }
 
     private GoPluginApiResponse renderJSON(final int responseCode, final Map<String, String> responseHeaders, Object response) {
-        final String json = response == null ? null : JSONUtils.toJSON(response);
+        return render(responseCode, responseHeaders, response == null ? null : JSONUtils.toJSON(response));
+    }
+
+    private GoPluginApiResponse render(final int responseCode, final Map<String, String> responseHeaders, final String json) {
         return new GoPluginApiResponse() {
             @Override
             public int responseCode() {
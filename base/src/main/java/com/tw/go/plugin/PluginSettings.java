@@ -4,6 +4,7 @@ public class PluginSettings {
     private String serverBaseURL;
     private String consumerKey;
     private String consumerSecret;
+    private String fingerprint;
 
     public PluginSettings() {
 
@@ -39,4 +40,11 @@ public class PluginSettings {
         this.consumerSecret = consumerSecret;
     }
 
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
 }
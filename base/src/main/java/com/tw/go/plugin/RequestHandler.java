@@ -0,0 +1,8 @@
+package com.tw.go.plugin;
+
+import com.thoughtworks.go.plugin.api.request.GoPluginApiRequest;
+import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
+
+public interface RequestHandler {
+    GoPluginApiResponse handle(GoPluginApiRequest goPluginApiRequest);
+}
@@ -4,6 +4,7 @@ public class User {
     private String username;
     private String displayName;
     private String emailId;
+    private transient String accessToken;
 
     public User(String username, String displayName, String emailId) {
         this.username = username;
@@ -35,6 +36,14 @@ public class User {
         this.emailId = emailId == null ? null : emailId.toLowerCase().trim();
     }
 
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public void setAccessToken(String accessToken) {
+        this.accessToken = accessToken;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
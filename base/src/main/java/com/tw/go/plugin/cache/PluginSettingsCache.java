@@ -0,0 +1,176 @@
+package com.tw.go.plugin.cache;
+
+import com.tw.go.plugin.PluginSettings;
+import com.tw.go.plugin.provider.Provider;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+public class PluginSettingsCache<T extends PluginSettings> {
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_PENDING_CHANGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long PENDING_CHANGE_RELOAD_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private final Provider<T> provider;
+    private final Loader loader;
+    private final long ttlMillis;
+    private final long pendingChangeMillis;
+
+    private volatile Snapshot<T> snapshot;
+    private volatile PendingChange pendingChange;
+
+    public PluginSettingsCache(Provider<T> provider, Loader loader) {
+        this(provider, loader, DEFAULT_TTL_MILLIS, DEFAULT_PENDING_CHANGE_MILLIS);
+    }
+
+    public PluginSettingsCache(Provider<T> provider, Loader loader, long ttlMillis, long pendingChangeMillis) {
+        this.provider = provider;
+        this.loader = loader;
+        this.ttlMillis = ttlMillis;
+        this.pendingChangeMillis = pendingChangeMillis;
+    }
+
+    public T get() {
+        return current().getSettings();
+    }
+
+    public String fingerprint() {
+        return current().getFingerprint();
+    }
+
+    public Snapshot<T> current() {
+        Snapshot<T> current = snapshot;
+        if (isStale(current)) {
+            synchronized (this) {
+                current = snapshot;
+                if (isStale(current)) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // GoCD validates new settings before persisting them, so the values seen here may not be readable yet.
+    // Keep reloading, at most once a second, until the stored settings catch up or the change is abandoned.
+    public void expect(Map<String, String> configuration) {
+        String expectedFingerprint = fingerprint(configuration);
+        Snapshot<T> current = snapshot;
+        if (current != null && current.getFingerprint().equals(expectedFingerprint)) {
+            return;
+        }
+        pendingChange = new PendingChange(expectedFingerprint, System.currentTimeMillis() + pendingChangeMillis);
+    }
+
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private boolean isStale(Snapshot<T> current) {
+        long now = System.currentTimeMillis();
+        if (current == null || now - current.getLoadedAt() >= ttlMillis) {
+            return true;
+        }
+
+        PendingChange change = pendingChange;
+        if (change == null) {
+            return false;
+        }
+        if (change.fingerprint.equals(current.getFingerprint()) || now > change.expiresAt) {
+            pendingChange = null;
+            return false;
+        }
+        return now - current.getLoadedAt() >= PENDING_CHANGE_RELOAD_INTERVAL_MILLIS;
+    }
+
+    private Snapshot<T> load() {
+        Map<String, String> settings = loader.load();
+        String fingerprint = fingerprint(settings);
+        T pluginSettings = provider.pluginSettings(settings);
+        pluginSettings.setFingerprint(fingerprint);
+        return new Snapshot<T>(pluginSettings, Collections.unmodifiableMap(new TreeMap<String, String>(settings)), fingerprint, System.currentTimeMillis());
+    }
+
+    public static String fingerprint(Map<String, String> settings) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, String> entry : new TreeMap<String, String>(settings).entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                update(digest, entry.getKey());
+                update(digest, entry.getValue());
+            }
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    public interface Loader {
+        Map<String, String> load();
+    }
+
+    public static final class Snapshot<T extends PluginSettings> {
+        private final T settings;
+        private final Map<String, String> values;
+        private final String fingerprint;
+        private final long loadedAt;
+
+        private Snapshot(T settings, Map<String, String> values, String fingerprint, long loadedAt) {
+            this.settings = settings;
+            this.values = values;
+            this.fingerprint = fingerprint;
+            this.loadedAt = loadedAt;
+        }
+
+        public T getSettings() {
+            return settings;
+        }
+
+        public Map<String, String> getValues() {
+            return values;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+    }
+
+    private static final class PendingChange {
+        private final String fingerprint;
+        private final long expiresAt;
+
+        private PendingChange(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
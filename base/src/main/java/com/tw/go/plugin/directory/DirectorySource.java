@@ -0,0 +1,18 @@
+package com.tw.go.plugin.directory;
+
+import com.tw.go.plugin.PluginSettings;
+import com.tw.go.plugin.User;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface DirectorySource<T extends PluginSettings> {
+
+    boolean canSynchronize(T pluginSettings);
+
+    void synchronize(T pluginSettings, SyncCheckpoint checkpoint, UserSink sink) throws IOException, RateLimitedException;
+
+    interface UserSink {
+        void accept(List<User> users);
+    }
+}
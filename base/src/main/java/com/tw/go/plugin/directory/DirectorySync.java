@@ -0,0 +1,124 @@
+package com.tw.go.plugin.directory;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.PluginSettings;
+import com.tw.go.plugin.User;
+import com.tw.go.plugin.util.DaemonThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class DirectorySync {
+    private static final Logger LOGGER = Logger.getLoggerFor(DirectorySync.class);
+    private static final long SYNC_INTERVAL_MINUTES = 15;
+
+    private final DirectorySource source;
+    private final Target target;
+    private final SyncCheckpoint checkpoint = new SyncCheckpoint();
+    private ScheduledExecutorService scheduler;
+    private String checkpointFingerprint;
+    private volatile String completedFingerprint;
+    private volatile long retryAt;
+    private volatile long lastSyncedAt;
+    private volatile long lastSyncDurationMillis;
+    private volatile int lastSyncCount;
+
+    public DirectorySync(DirectorySource source, Target target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("directory-sync"));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                synchronize();
+            }
+        }, 0, SYNC_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void synchronize() {
+        if (System.currentTimeMillis() < retryAt) {
+            return;
+        }
+        PluginSettings pluginSettings;
+        try {
+            pluginSettings = target.pluginSettings();
+        } catch (Exception e) {
+            LOGGER.debug(String.format("Skipping user directory synchronization: %s", e.getMessage()));
+            return;
+        }
+        if (pluginSettings == null || !source.canSynchronize(pluginSettings)) {
+            return;
+        }
+        if (!pluginSettings.getFingerprint().equals(checkpointFingerprint)) {
+            checkpoint.clear();
+            checkpointFingerprint = pluginSettings.getFingerprint();
+        }
+        if (!checkpoint.isResuming()) {
+            checkpoint.beginPass();
+        }
+
+        final UserDirectory directory = target.userDirectory(pluginSettings);
+        final int[] count = new int[1];
+        long start = System.currentTimeMillis();
+        try {
+            source.synchronize(pluginSettings, checkpoint, new DirectorySource.UserSink() {
+                @Override
+                public void accept(List<User> users) {
+                    directory.addSynced(users);
+                    checkpoint.delivered(users);
+                    count[0] += users.size();
+                }
+            });
+            int removed = directory.retainOnly(checkpoint.getSeenUsers());
+            lastSyncedAt = System.currentTimeMillis();
+            lastSyncDurationMillis = lastSyncedAt - start;
+            lastSyncCount = count[0];
+            completedFingerprint = pluginSettings.getFingerprint();
+            LOGGER.info(String.format("Synchronized user directory in %d ms: %d users fetched, %d users removed, %d users known", lastSyncDurationMillis, lastSyncCount, removed, directory.size()));
+        } catch (RateLimitedException e) {
+            retryAt = e.getRetryAt();
+            LOGGER.warn(String.format("Paused user directory synchronization after %d users: %s", count[0], e.getMessage()));
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Error occurred while synchronizing user directory after %d users", count[0]), e);
+        }
+    }
+
+    // Whether a full pass has completed for these settings, so the directory holds every user the source knows.
+    public boolean isComplete(PluginSettings pluginSettings) {
+        return pluginSettings.getFingerprint() != null && pluginSettings.getFingerprint().equals(completedFingerprint);
+    }
+
+    public long getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+
+    public long getLastSyncDurationMillis() {
+        return lastSyncDurationMillis;
+    }
+
+    public int getLastSyncCount() {
+        return lastSyncCount;
+    }
+
+    public interface Target {
+        PluginSettings pluginSettings() throws Exception;
+
+        UserDirectory userDirectory(PluginSettings pluginSettings);
+    }
+}
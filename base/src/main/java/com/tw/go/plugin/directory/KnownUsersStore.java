@@ -0,0 +1,127 @@
+package com.tw.go.plugin.directory;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.User;
+import com.tw.go.plugin.message.UserMessage;
+import com.tw.go.plugin.util.DaemonThreadFactory;
+import com.tw.go.plugin.util.JSONUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Everyone who has logged in, most recent last, bounded to the most recent logins and written behind to a file
+// so the login request never waits on the disk. Without a file the store only lives in memory.
+public class KnownUsersStore {
+    private static final Logger LOGGER = Logger.getLoggerFor(KnownUsersStore.class);
+    public static final String DATA_DIR_PROPERTY = "gocd.oauth.login.data.dir";
+    private static final int DEFAULT_CAPACITY = 10000;
+    private static final long SAVE_DELAY_SECONDS = 5;
+
+    private final File file;
+    private final int capacity;
+    private final Map<String, User> users;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("known-users-writer"));
+    private boolean loaded;
+    private boolean saveScheduled;
+
+    public KnownUsersStore(File file, final int capacity) {
+        this.file = file;
+        this.capacity = capacity;
+        this.users = new LinkedHashMap<String, User>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Persisting is opt-in: the plugin has no directory of its own on the server, so nothing is written unless an
+    // operator points the data dir property at one.
+    public static KnownUsersStore forPlugin(String pluginId) {
+        String directory = System.getProperty(DATA_DIR_PROPERTY);
+        if (directory == null || directory.trim().isEmpty()) {
+            return new KnownUsersStore(null, DEFAULT_CAPACITY);
+        }
+        return new KnownUsersStore(new File(directory.trim(), pluginId + "-known-users.json"), DEFAULT_CAPACITY);
+    }
+
+    public synchronized List<User> users() {
+        load();
+        return new ArrayList<User>(users.values());
+    }
+
+    public synchronized void record(User user) {
+        if (user == null || user.getUsername() == null) {
+            return;
+        }
+        load();
+        users.put(user.getUsername().toLowerCase(), new User(user.getUsername(), user.getDisplayName(), user.getEmailId()));
+        if (file != null && !saveScheduled) {
+            saveScheduled = true;
+            writer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    save();
+                }
+            }, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        List<User> snapshot;
+        synchronized (this) {
+            saveScheduled = false;
+            snapshot = new ArrayList<User>(users.values());
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            File directory = file.getAbsoluteFile().getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException(String.format("Could not create %s", directory));
+            }
+            try (OutputStream outputStream = new FileOutputStream(temporary)) {
+                outputStream.write(JSONUtils.usersToJSON(snapshot).getBytes(StandardCharsets.UTF_8));
+            }
+            if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+                throw new IOException(String.format("Could not replace %s", file));
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not save known users to %s", file), e);
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            for (UserMessage message : JSONUtils.readArray(reader, UserMessage.class, capacity)) {
+                if (message.getUsername() != null) {
+                    users.put(message.getUsername().toLowerCase(), new User(message.getUsername(), message.getDisplayName(), message.getEmailId()));
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Could not load known users from %s", file), e);
+        }
+    }
+}
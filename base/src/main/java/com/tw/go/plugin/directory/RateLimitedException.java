@@ -0,0 +1,14 @@
+package com.tw.go.plugin.directory;
+
+public class RateLimitedException extends Exception {
+    private final long retryAt;
+
+    public RateLimitedException(long retryAt) {
+        super(String.format("Rate limit exhausted until %tT", retryAt));
+        this.retryAt = retryAt;
+    }
+
+    public long getRetryAt() {
+        return retryAt;
+    }
+}
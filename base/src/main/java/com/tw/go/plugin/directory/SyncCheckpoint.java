@@ -0,0 +1,95 @@
+package com.tw.go.plugin.directory;
+
+import com.tw.go.plugin.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Remembers, per page URL, the validator and the next page link of the last response so an unchanged page can be
+// skipped with a conditional request, and where an interrupted listing should resume. The logins each page delivered
+// are kept too, so users on skipped pages still count as seen by the current pass.
+public class SyncCheckpoint {
+    private final Map<String, String> etags = new HashMap<String, String>();
+    private final Map<String, String> nextPages = new HashMap<String, String>();
+    private final Map<String, String> resumeUrls = new HashMap<String, String>();
+    private final Map<String, List<String>> pageUsers = new HashMap<String, List<String>>();
+    private List<String> delivered = new ArrayList<String>();
+    private Set<String> seen = new HashSet<String>();
+
+    public synchronized String getETag(String url) {
+        return etags.get(url);
+    }
+
+    public synchronized String skipUnchangedPage(String url) {
+        List<String> users = pageUsers.get(url);
+        if (users != null) {
+            seen.addAll(users);
+        }
+        return nextPages.get(url);
+    }
+
+    public synchronized void delivered(Collection<? extends User> users) {
+        for (User user : users) {
+            if (user != null && user.getUsername() != null) {
+                String login = user.getUsername().toLowerCase();
+                delivered.add(login);
+                seen.add(login);
+            }
+        }
+    }
+
+    public synchronized void recordPage(String url, String etag, String nextPage) {
+        if (etag == null) {
+            etags.remove(url);
+        } else {
+            etags.put(url, etag);
+        }
+        if (nextPage == null) {
+            nextPages.remove(url);
+        } else {
+            nextPages.put(url, nextPage);
+        }
+        pageUsers.put(url, delivered);
+        delivered = new ArrayList<String>();
+    }
+
+    public synchronized String getResumeUrl(String listing, String firstPage) {
+        String url = resumeUrls.get(listing);
+        return url == null ? firstPage : url;
+    }
+
+    public synchronized void setResumeUrl(String listing, String url) {
+        if (url == null) {
+            resumeUrls.remove(listing);
+        } else {
+            resumeUrls.put(listing, url);
+        }
+    }
+
+    public synchronized boolean isResuming() {
+        return !resumeUrls.isEmpty();
+    }
+
+    public synchronized void beginPass() {
+        seen = new HashSet<String>();
+        delivered = new ArrayList<String>();
+    }
+
+    public synchronized Set<String> getSeenUsers() {
+        return new HashSet<String>(seen);
+    }
+
+    public synchronized void clear() {
+        pageUsers.clear();
+        seen = new HashSet<String>();
+        delivered = new ArrayList<String>();
+        etags.clear();
+        nextPages.clear();
+        resumeUrls.clear();
+    }
+}
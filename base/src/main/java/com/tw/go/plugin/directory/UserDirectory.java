@@ -0,0 +1,290 @@
+package com.tw.go.plugin.directory;
+
+import com.tw.go.plugin.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Users are kept as one lowercased "login \0 display name \0 email" string each. The index is a sorted array of
+// (user id, offset) pairs, one for every position where a word starts, so a prefix search is a binary search over
+// the suffixes of those strings. Users added since the last rebuild are scanned linearly until enough accumulate.
+// Only users that came from a directory sync are pruned when a later sync no longer lists them; users who logged in
+// and search results stay.
+public class UserDirectory {
+    private static final int UNINDEXED_LIMIT = 1024;
+    private static final char FIELD_SEPARATOR = '\0';
+
+    private final Object lock = new Object();
+    private Map<String, Integer> ids = new HashMap<String, Integer>();
+    private Set<String> synced = new HashSet<String>();
+    private Set<String> known = new HashSet<String>();
+    private volatile Snapshot snapshot = new Snapshot(new User[16], new String[16], 0, new long[0], 0);
+
+    public int size() {
+        synchronized (lock) {
+            return ids.size();
+        }
+    }
+
+    public void add(User user) {
+        addAll(Collections.singletonList(user));
+    }
+
+    public void addAll(Collection<? extends User> users) {
+        synchronized (lock) {
+            put(users);
+        }
+    }
+
+    // Users listed by a directory sync, which a later pass may drop again.
+    public void addSynced(Collection<? extends User> users) {
+        synchronized (lock) {
+            for (String key : put(users)) {
+                synced.add(key);
+            }
+        }
+    }
+
+    // Users who logged in, which are kept whatever a sync reports.
+    public void addKnown(Collection<? extends User> users) {
+        synchronized (lock) {
+            for (String key : put(users)) {
+                known.add(key);
+            }
+        }
+    }
+
+    // A user seen again without a display name or email keeps the ones already known, so a sync that only lists
+    // logins does not erase what was recorded at login.
+    // User falls back to the login when it has no display name of its own.
+    private static boolean hasDisplayName(User user) {
+        return !user.getDisplayName().equals(user.getUsername());
+    }
+
+    private List<String> put(Collection<? extends User> users) {
+        List<String> keys = new ArrayList<String>(users.size());
+        Snapshot current = snapshot;
+        User[] entries = current.users;
+        String[] texts = current.texts;
+        int count = current.count;
+        for (User added : users) {
+            if (added == null || added.getUsername() == null) {
+                continue;
+            }
+            String key = added.getUsername().toLowerCase();
+            keys.add(key);
+            Integer id = ids.get(key);
+            User existing = id == null ? null : entries[id];
+            User user = new User(added.getUsername(),
+                    hasDisplayName(added) || existing == null ? added.getDisplayName() : existing.getDisplayName(),
+                    added.getEmailId() != null || existing == null ? added.getEmailId() : existing.getEmailId());
+            String text = searchText(user);
+            if (id != null && texts[id].equals(text)) {
+                entries[id] = user;
+                continue;
+            }
+            if (id != null) {
+                entries[id] = null;
+            }
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+                texts = Arrays.copyOf(texts, count * 2);
+            }
+            entries[count] = user;
+            texts[count] = text;
+            ids.put(key, count);
+            count++;
+        }
+        Snapshot updated = new Snapshot(entries, texts, count, current.index, current.indexedCount);
+        snapshot = count - current.indexedCount > UNINDEXED_LIMIT ? rebuild(updated) : updated;
+        return keys;
+    }
+
+    // Drops every synced user whose lowercased login is not in the given set, unless they logged in, and returns how
+    // many were dropped.
+    public int retainOnly(Set<String> usernames) {
+        synchronized (lock) {
+            Snapshot current = snapshot;
+            List<String> dropped = new ArrayList<String>();
+            for (String key : synced) {
+                if (!usernames.contains(key) && !known.contains(key)) {
+                    dropped.add(key);
+                }
+            }
+            for (String key : dropped) {
+                current.users[ids.remove(key)] = null;
+                synced.remove(key);
+            }
+            if (!dropped.isEmpty()) {
+                snapshot = rebuild(current);
+            }
+            return dropped.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            ids = new HashMap<String, Integer>();
+            synced = new HashSet<String>();
+            known = new HashSet<String>();
+            snapshot = new Snapshot(new User[16], new String[16], 0, new long[0], 0);
+        }
+    }
+
+    public List<User> search(String searchTerm, int limit) {
+        List<User> results = new ArrayList<User>();
+        if (searchTerm == null || searchTerm.trim().isEmpty() || limit <= 0) {
+            return results;
+        }
+        String term = searchTerm.trim().toLowerCase();
+        Snapshot current = snapshot;
+        Set<Integer> found = new HashSet<Integer>();
+
+        for (int i = current.lowerBound(term); i < current.index.length && results.size() < limit; i++) {
+            int id = id(current.index[i]);
+            if (!current.texts[id].startsWith(term, offset(current.index[i]))) {
+                break;
+            }
+            User user = current.users[id];
+            if (user != null && found.add(id)) {
+                results.add(user);
+            }
+        }
+        for (int id = current.indexedCount; id < current.count && results.size() < limit; id++) {
+            User user = current.users[id];
+            if (user != null && matches(current.texts[id], term)) {
+                results.add(user);
+            }
+        }
+        return results;
+    }
+
+    private Snapshot rebuild(Snapshot current) {
+        User[] entries = new User[Math.max(16, ids.size() * 2)];
+        String[] texts = new String[entries.length];
+        Map<String, Integer> compacted = new HashMap<String, Integer>(ids.size() * 2);
+        int count = 0;
+        int tokens = 0;
+        for (int id = 0; id < current.count; id++) {
+            if (current.users[id] != null) {
+                entries[count] = current.users[id];
+                texts[count] = current.texts[id];
+                compacted.put(entries[count].getUsername().toLowerCase(), count);
+                tokens += wordStarts(texts[count]).length;
+                count++;
+            }
+        }
+
+        Long[] pairs = new Long[tokens];
+        int position = 0;
+        for (int id = 0; id < count; id++) {
+            for (int offset : wordStarts(texts[id])) {
+                pairs[position++] = ((long) id << 32) | offset;
+            }
+        }
+        final String[] sortTexts = texts;
+        Arrays.sort(pairs, new Comparator<Long>() {
+            @Override
+            public int compare(Long left, Long right) {
+                return compareSuffix(sortTexts[id(left)], offset(left), sortTexts[id(right)], offset(right));
+            }
+        });
+        long[] index = new long[tokens];
+        for (int i = 0; i < tokens; i++) {
+            index[i] = pairs[i];
+        }
+
+        ids = compacted;
+        return new Snapshot(entries, texts, count, index, count);
+    }
+
+    private static String searchText(User user) {
+        return (nullToEmpty(user.getUsername()) + FIELD_SEPARATOR + nullToEmpty(user.getDisplayName()) + FIELD_SEPARATOR + nullToEmpty(user.getEmailId())).toLowerCase();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static boolean matches(String text, String term) {
+        for (int i = 0; i < text.length(); i++) {
+            if (isWordStart(text, i) && text.startsWith(term, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] wordStarts(String text) {
+        int[] starts = new int[text.length()];
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isWordStart(text, i)) {
+                starts[count++] = i;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static boolean isWordStart(String text, int i) {
+        return Character.isLetterOrDigit(text.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)));
+    }
+
+    private static int compareSuffix(String left, int leftOffset, String right, int rightOffset) {
+        int length = Math.min(left.length() - leftOffset, right.length() - rightOffset);
+        for (int i = 0; i < length; i++) {
+            char l = left.charAt(leftOffset + i);
+            char r = right.charAt(rightOffset + i);
+            if (l != r) {
+                return l - r;
+            }
+        }
+        return (left.length() - leftOffset) - (right.length() - rightOffset);
+    }
+
+    private static int id(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    private static int offset(long pair) {
+        return (int) pair;
+    }
+
+    private static class Snapshot {
+        private final User[] users;
+        private final String[] texts;
+        private final int count;
+        private final long[] index;
+        private final int indexedCount;
+
+        private Snapshot(User[] users, String[] texts, int count, long[] index, int indexedCount) {
+            this.users = users;
+            this.texts = texts;
+            this.count = count;
+            this.index = index;
+            this.indexedCount = indexedCount;
+        }
+
+        private int lowerBound(String term) {
+            int low = 0;
+            int high = index.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compareSuffix(texts[id(index[middle])], offset(index[middle]), term, 0) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
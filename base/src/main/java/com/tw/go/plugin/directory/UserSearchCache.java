@@ -0,0 +1,133 @@
+package com.tw.go.plugin.directory;
+
+import com.tw.go.plugin.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Sits in front of the provider's live search. Identical terms searched concurrently share one upstream call,
+// results are kept for a short while, and a result set that was not cut off by the limit answers any longer term
+// starting with the same prefix by filtering it locally.
+public class UserSearchCache {
+    private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int CAPACITY = 256;
+
+    private final Map<String, Result> results = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+    private final ConcurrentHashMap<String, FutureTask<Result>> inFlight = new ConcurrentHashMap<String, FutureTask<Result>>();
+    private final AtomicInteger upstreamSearches = new AtomicInteger();
+
+    public List<User> search(String scope, String searchTerm, final int limit, final Search upstream) {
+        final String term = searchTerm == null ? "" : searchTerm.trim().toLowerCase();
+        final String key = scope + "\n" + term;
+
+        Result cached = cached(key);
+        if (cached != null) {
+            return cached.users;
+        }
+        for (int length = term.length() - 1; length > 0; length--) {
+            Result prefix = cached(scope + "\n" + term.substring(0, length));
+            if (prefix != null && prefix.complete) {
+                return filter(prefix.users, term);
+            }
+        }
+
+        FutureTask<Result> task = new FutureTask<Result>(new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                upstreamSearches.incrementAndGet();
+                List<User> users = upstream.search(term);
+                if (users == null) {
+                    // No answer from upstream, which is not the same as no matches: nothing is kept to be reused.
+                    return new Result(Collections.<User>emptyList(), false, 0);
+                }
+                Result result = new Result(Collections.unmodifiableList(new ArrayList<User>(users)), users.size() < limit,
+                        System.currentTimeMillis() + TTL_MILLIS);
+                synchronized (results) {
+                    results.put(key, result);
+                }
+                return result;
+            }
+        });
+        FutureTask<Result> running = inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+        }
+
+        try {
+            return running.get().users;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public int getUpstreamSearches() {
+        return upstreamSearches.get();
+    }
+
+    private Result cached(String key) {
+        synchronized (results) {
+            Result result = results.get(key);
+            if (result != null && result.expiresAt < System.currentTimeMillis()) {
+                results.remove(key);
+                return null;
+            }
+            return result;
+        }
+    }
+
+    private List<User> filter(List<User> users, String term) {
+        List<User> matches = new ArrayList<User>();
+        for (User user : users) {
+            if (contains(user.getUsername(), term) || contains(user.getDisplayName(), term) || contains(user.getEmailId(), term)) {
+                matches.add(user);
+            }
+        }
+        return matches;
+    }
+
+    private boolean contains(String value, String term) {
+        return value != null && value.toLowerCase().contains(term);
+    }
+
+    public interface Search {
+        // The matching users, or null when upstream could not answer.
+        List<User> search(String searchTerm);
+    }
+
+    private static class Result {
+        private final List<User> users;
+        private final boolean complete;
+        private final long expiresAt;
+
+        private Result(List<User> users, boolean complete, long expiresAt) {
+            this.users = users;
+            this.complete = complete;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
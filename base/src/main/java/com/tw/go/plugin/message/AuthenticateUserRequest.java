@@ -0,0 +1,13 @@
+package com.tw.go.plugin.message;
+
+public class AuthenticateUserRequest {
+    private final UserMessage user;
+
+    public AuthenticateUserRequest(UserMessage user) {
+        this.user = user;
+    }
+
+    public UserMessage getUser() {
+        return user;
+    }
+}
@@ -0,0 +1,16 @@
+package com.tw.go.plugin.message;
+
+import com.google.gson.annotations.SerializedName;
+
+public class PluginIdRequest {
+    @SerializedName("plugin-id")
+    private final String pluginId;
+
+    public PluginIdRequest(String pluginId) {
+        this.pluginId = pluginId;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+}
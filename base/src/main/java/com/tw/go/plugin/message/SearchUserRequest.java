@@ -0,0 +1,12 @@
+package com.tw.go.plugin.message;
+
+import com.google.gson.annotations.SerializedName;
+
+public class SearchUserRequest {
+    @SerializedName("search-term")
+    private String searchTerm;
+
+    public String getSearchTerm() {
+        return searchTerm;
+    }
+}
@@ -0,0 +1,25 @@
+package com.tw.go.plugin.message;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.Map;
+
+public class SessionPutRequest {
+    @SerializedName("plugin-id")
+    private final String pluginId;
+    @SerializedName("session-data")
+    private final Map<String, String> sessionData;
+
+    public SessionPutRequest(String pluginId, Map<String, String> sessionData) {
+        this.pluginId = pluginId;
+        this.sessionData = sessionData;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public Map<String, String> getSessionData() {
+        return sessionData;
+    }
+}
@@ -0,0 +1,30 @@
+package com.tw.go.plugin.message;
+
+import com.google.gson.annotations.SerializedName;
+import com.tw.go.plugin.User;
+
+public class UserMessage {
+    private final String username;
+    @SerializedName("display-name")
+    private final String displayName;
+    @SerializedName("email-id")
+    private final String emailId;
+
+    public UserMessage(User user) {
+        this.username = user.getUsername();
+        this.displayName = user.getDisplayName();
+        this.emailId = user.getEmailId();
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getEmailId() {
+        return emailId;
+    }
+}
@@ -0,0 +1,26 @@
+package com.tw.go.plugin.message;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ValidatePluginSettingsRequest {
+    @SerializedName("plugin-settings")
+    private Map<String, Field> pluginSettings;
+
+    public Map<String, String> toConfiguration() {
+        Map<String, String> configuration = new HashMap<String, String>();
+        if (pluginSettings == null) {
+            return configuration;
+        }
+        for (Map.Entry<String, Field> entry : pluginSettings.entrySet()) {
+            configuration.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().value);
+        }
+        return configuration;
+    }
+
+    private static class Field {
+        private String value;
+    }
+}
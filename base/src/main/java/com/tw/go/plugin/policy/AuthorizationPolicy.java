@@ -0,0 +1,125 @@
+package com.tw.go.plugin.policy;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+public class AuthorizationPolicy {
+    private static final Pattern NEVER_MATCHES = Pattern.compile("(?!)");
+
+    private final Set<String> domains;
+    private final Pattern usernamePattern;
+    private final Set<String> groups;
+
+    private AuthorizationPolicy(Set<String> domains, Pattern usernamePattern, Set<String> groups) {
+        this.domains = domains;
+        this.usernamePattern = usernamePattern;
+        this.groups = groups;
+    }
+
+    public static AuthorizationPolicy compile(String allowedDomains, String usernameRegex, String allowedGroups) {
+        return new AuthorizationPolicy(split(allowedDomains), compilePattern(usernameRegex), split(allowedGroups));
+    }
+
+    public static AuthorizationPolicy forGroups(String allowedGroups) {
+        return compile(null, null, allowedGroups);
+    }
+
+    public boolean hasDomains() {
+        return !domains.isEmpty();
+    }
+
+    public boolean hasUsernamePattern() {
+        return usernamePattern != null;
+    }
+
+    public boolean hasGroups() {
+        return !groups.isEmpty();
+    }
+
+    public Set<String> getGroups() {
+        return groups;
+    }
+
+    public boolean matchesDomain(String username) {
+        if (username == null) {
+            return false;
+        }
+        int at = username.lastIndexOf('@');
+        return at >= 0 && allowsDomain(username.substring(at + 1));
+    }
+
+    // An allowed domain also admits its subdomains, so the domain and each parent after a dot are looked up in turn.
+    public boolean allowsDomain(String domain) {
+        if (domain == null) {
+            return false;
+        }
+        String suffix = domain.toLowerCase();
+        while (!suffix.isEmpty()) {
+            if (domains.contains(suffix)) {
+                return true;
+            }
+            int dot = suffix.indexOf('.');
+            if (dot < 0) {
+                return false;
+            }
+            suffix = suffix.substring(dot + 1);
+        }
+        return false;
+    }
+
+    public boolean matchesUsername(String username) {
+        return username != null && usernamePattern.matcher(username).matches();
+    }
+
+    public boolean matchesAnyGroup(Collection<String> memberships) {
+        return firstMatchingGroup(memberships) != null;
+    }
+
+    public String firstMatchingGroup(Collection<String> memberships) {
+        if (memberships == null) {
+            return null;
+        }
+        for (String membership : memberships) {
+            if (membership == null) {
+                continue;
+            }
+            String group = membership.trim().toLowerCase();
+            if (groups.contains(group)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private static Set<String> split(String values) {
+        if (isBlank(values)) {
+            return Collections.emptySet();
+        }
+        String[] entries = values.split(",");
+        Set<String> result = new HashSet<String>(entries.length * 2);
+        for (String entry : entries) {
+            String value = entry.trim().toLowerCase();
+            if (!value.isEmpty()) {
+                result.add(value);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private static Pattern compilePattern(String regex) {
+        if (isBlank(regex)) {
+            return null;
+        }
+        try {
+            return Pattern.compile(regex.trim());
+        } catch (PatternSyntaxException e) {
+            return NEVER_MATCHES;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.tw.go.plugin.provider;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.PluginSettings;
+import com.tw.go.plugin.User;
+import com.tw.go.plugin.util.DaemonThreadFactory;
+import org.brickred.socialauth.Permission;
+import org.brickred.socialauth.Profile;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class CachingProvider<T extends PluginSettings> implements Provider<T> {
+    private static final Logger LOGGER = Logger.getLoggerFor(CachingProvider.class);
+
+    public static final long DEFAULT_POSITIVE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    public static final long DEFAULT_MAX_STALE_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    public static final long DEFAULT_REVALIDATE_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    public static final long DEFAULT_ALLOW_REVALIDATE_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final double REFRESH_AHEAD_FACTOR = 0.8;
+
+    private final Provider<T> delegate;
+    private final long positiveTtlMillis;
+    private final long negativeTtlMillis;
+    private final long maxStaleMillis;
+    private final long revalidateWaitMillis;
+    private final long allowRevalidateWaitMillis;
+    private final Map<String, Decision> decisions;
+    private final ConcurrentMap<String, Future<Boolean>> refreshes = new ConcurrentHashMap<String, Future<Boolean>>();
+    private final ExecutorService refresher;
+
+    public CachingProvider(Provider<T> delegate) {
+        this(delegate, DEFAULT_POSITIVE_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS, DEFAULT_MAX_STALE_MILLIS, DEFAULT_REVALIDATE_WAIT_MILLIS, DEFAULT_MAX_ENTRIES);
+    }
+
+    public CachingProvider(Provider<T> delegate, long positiveTtlMillis, long negativeTtlMillis, long maxStaleMillis, long revalidateWaitMillis, final int maxEntries) {
+        this(delegate, positiveTtlMillis, negativeTtlMillis, maxStaleMillis, revalidateWaitMillis, DEFAULT_ALLOW_REVALIDATE_WAIT_MILLIS, maxEntries);
+    }
+
+    public CachingProvider(Provider<T> delegate, long positiveTtlMillis, long negativeTtlMillis, long maxStaleMillis, long revalidateWaitMillis, long allowRevalidateWaitMillis, final int maxEntries) {
+        this.delegate = delegate;
+        this.positiveTtlMillis = positiveTtlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.maxStaleMillis = maxStaleMillis;
+        this.revalidateWaitMillis = revalidateWaitMillis;
+        this.allowRevalidateWaitMillis = allowRevalidateWaitMillis;
+        this.decisions = new LinkedHashMap<String, Decision>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.refresher = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(maxEntries), new DaemonThreadFactory("authorization-refresh"));
+        ((ThreadPoolExecutor) this.refresher).allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public boolean authorize(T pluginSettings, User user) {
+        if (pluginSettings.getFingerprint() == null || user == null) {
+            return delegate.authorize(pluginSettings, user);
+        }
+
+        String key = pluginSettings.getFingerprint() + "\n" + user.getUsername();
+        Decision decision = cached(key);
+        long now = System.currentTimeMillis();
+        if (decision == null || now >= decision.expiresAt + maxStaleMillis) {
+            return load(key, pluginSettings, user);
+        }
+        if (now < decision.refreshAt) {
+            return decision.authorized;
+        }
+
+        Future<Boolean> refresh = refresh(key, pluginSettings, user);
+        if (now < decision.expiresAt) {
+            return decision.authorized;
+        }
+        // Past the TTL an allow decision is only served again when upstream fails, never while it is merely slow, so
+        // a revoked user stays authorized for at most the positive TTL. An upstream that does not answer in time denies
+        // the login without caching the denial. Denials may be served stale while revalidating.
+        if (decision.authorized && refresh != null) {
+            try {
+                return refresh.get(allowRevalidateWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                LOGGER.warn(String.format("Denying %s after waiting %d ms for upstream to revalidate an expired authorization", user.getUsername(), allowRevalidateWaitMillis));
+                return false;
+            } catch (Exception e) {
+                LOGGER.warn("Error occurred while refreshing authorization decision", e);
+                return decision.authorized;
+            }
+        }
+        try {
+            if (decision.authorized) {
+                return load(key, pluginSettings, user);
+            }
+            return refresh == null ? decision.authorized : refresh.get(revalidateWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.debug(String.format("Serving stale authorization decision for %s while upstream is slow", user.getUsername()));
+            return decision.authorized;
+        } catch (Exception e) {
+            LOGGER.warn("Error occurred while refreshing authorization decision", e);
+            return decision.authorized;
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (decisions) {
+            decisions.clear();
+        }
+    }
+
+    private Decision cached(String key) {
+        synchronized (decisions) {
+            return decisions.get(key);
+        }
+    }
+
+    private boolean load(String key, T pluginSettings, User user) {
+        boolean authorized = delegate.authorize(pluginSettings, user);
+        long now = System.currentTimeMillis();
+        long ttl = authorized ? positiveTtlMillis : negativeTtlMillis;
+        Decision decision = new Decision(authorized, now + (long) (ttl * REFRESH_AHEAD_FACTOR), now + ttl);
+        synchronized (decisions) {
+            decisions.put(key, decision);
+        }
+        return authorized;
+    }
+
+    private Future<Boolean> refresh(final String key, final T pluginSettings, final User user) {
+        FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                try {
+                    return load(key, pluginSettings, user);
+                } finally {
+                    refreshes.remove(key);
+                }
+            }
+        });
+        Future<Boolean> inFlight = refreshes.putIfAbsent(key, task);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        try {
+            refresher.execute(task);
+        } catch (RejectedExecutionException e) {
+            refreshes.remove(key);
+            return null;
+        }
+        return task;
+    }
+
+    @Override
+    public String getPluginId() {
+        return delegate.getPluginId();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public String getProviderName() {
+        return delegate.getProviderName();
+    }
+
+    @Override
+    public Permission getAuthPermission() {
+        return delegate.getAuthPermission();
+    }
+
+    @Override
+    public User getUser(Profile profile) {
+        return delegate.getUser(profile);
+    }
+
+    @Override
+    public List<User> searchUser(T pluginSettings, String searchTerm) {
+        return delegate.searchUser(pluginSettings, searchTerm);
+    }
+
+    @Override
+    public Properties configure(T pluginSettings) {
+        return delegate.configure(pluginSettings);
+    }
+
+    @Override
+    public T pluginSettings(Map<String, String> responseBodyMap) {
+        return delegate.pluginSettings(responseBodyMap);
+    }
+
+    private static class Decision {
+        private final boolean authorized;
+        private final long refreshAt;
+        private final long expiresAt;
+
+        private Decision(boolean authorized, long refreshAt, long expiresAt) {
+            this.authorized = authorized;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
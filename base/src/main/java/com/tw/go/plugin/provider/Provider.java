@@ -14,8 +14,6 @@ public interface Provider<T extends PluginSettings> {
 
     String getName();
 
-    String getImageURL();
-
     String getProviderName();
 
     Permission getAuthPermission();
@@ -0,0 +1,52 @@
+package com.tw.go.plugin.session;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class CompactSessionStateCodec implements SessionStateCodec {
+    public static final byte VERSION = 1;
+
+    @Override
+    public String encode(SessionState sessionState) {
+        return Base64.encodeBase64URLSafeString(toBytes(sessionState));
+    }
+
+    @Override
+    public SessionState decode(String encoded) {
+        return fromBytes(Base64.decodeBase64(encoded));
+    }
+
+    public byte[] toBytes(SessionState sessionState) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeUTF(sessionState.getProviderId());
+            out.writeUTF(sessionState.getState());
+            out.writeUTF(sessionState.getSuccessUrl());
+            out.writeLong(sessionState.getIssuedAt());
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public SessionState fromBytes(byte[] bytes) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException(String.format("Unsupported session state version: %d", version));
+            }
+            return new SessionState(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed session state", e);
+        }
+    }
+}
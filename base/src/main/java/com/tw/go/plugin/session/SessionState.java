@@ -0,0 +1,65 @@
+package com.tw.go.plugin.session;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.security.SecureRandom;
+
+public final class SessionState {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final String providerId;
+    private final String state;
+    private final String successUrl;
+    private final long issuedAt;
+
+    public SessionState(String providerId, String state, String successUrl, long issuedAt) {
+        this.providerId = providerId;
+        this.state = state;
+        this.successUrl = successUrl;
+        this.issuedAt = issuedAt;
+    }
+
+    public static SessionState create(String providerId, String successUrl) {
+        byte[] nonce = new byte[16];
+        RANDOM.nextBytes(nonce);
+        return new SessionState(providerId, Base64.encodeBase64URLSafeString(nonce), successUrl, System.currentTimeMillis());
+    }
+
+    public String getProviderId() {
+        return providerId;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getSuccessUrl() {
+        return successUrl;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SessionState that = (SessionState) o;
+
+        if (issuedAt != that.issuedAt) return false;
+        if (providerId != null ? !providerId.equals(that.providerId) : that.providerId != null) return false;
+        if (state != null ? !state.equals(that.state) : that.state != null) return false;
+        return successUrl != null ? successUrl.equals(that.successUrl) : that.successUrl == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = providerId != null ? providerId.hashCode() : 0;
+        result = 31 * result + (state != null ? state.hashCode() : 0);
+        result = 31 * result + (successUrl != null ? successUrl.hashCode() : 0);
+        result = 31 * result + (int) (issuedAt ^ (issuedAt >>> 32));
+        return result;
+    }
+}
@@ -0,0 +1,7 @@
+package com.tw.go.plugin.session;
+
+public interface SessionStateCodec {
+    String encode(SessionState sessionState);
+
+    SessionState decode(String encoded);
+}
@@ -0,0 +1,115 @@
+package com.tw.go.plugin.session;
+
+import org.apache.commons.codec.binary.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class SignedSessionStateCodec implements SessionStateCodec {
+    public static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final byte VERSION = 1;
+    private static final int IV_LENGTH = 16;
+    private static final int MAC_LENGTH = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final CompactSessionStateCodec compactCodec = new CompactSessionStateCodec();
+    private final SecretKeySpec encryptionKey;
+    private final SecretKeySpec signingKey;
+    private final long maxAgeMillis;
+
+    public SignedSessionStateCodec(String secret) {
+        this(secret, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    public SignedSessionStateCodec(String secret, long maxAgeMillis) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("A secret is required to sign session state");
+        }
+        byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+        this.encryptionKey = new SecretKeySpec(Arrays.copyOf(hmac(secretBytes, "oauth-state-encryption"), 16), "AES");
+        this.signingKey = new SecretKeySpec(hmac(secretBytes, "oauth-state-signature"), "HmacSHA256");
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @Override
+    public String encode(SessionState sessionState) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            RANDOM.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new IvParameterSpec(iv));
+            byte[] cipherText = cipher.doFinal(compactCodec.toBytes(sessionState));
+
+            byte[] token = new byte[1 + IV_LENGTH + cipherText.length + MAC_LENGTH];
+            token[0] = VERSION;
+            System.arraycopy(iv, 0, token, 1, IV_LENGTH);
+            System.arraycopy(cipherText, 0, token, 1 + IV_LENGTH, cipherText.length);
+            byte[] signature = sign(token, token.length - MAC_LENGTH);
+            System.arraycopy(signature, 0, token, token.length - MAC_LENGTH, MAC_LENGTH);
+            return Base64.encodeBase64URLSafeString(token);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Could not encrypt session state", e);
+        }
+    }
+
+    @Override
+    public SessionState decode(String encoded) {
+        if (encoded == null) {
+            throw new IllegalArgumentException("Session state is missing");
+        }
+        byte[] token = Base64.decodeBase64(encoded);
+        if (token.length < 1 + IV_LENGTH + MAC_LENGTH + 16 || token[0] != VERSION) {
+            throw new IllegalArgumentException("Malformed session state");
+        }
+
+        byte[] expectedSignature = sign(token, token.length - MAC_LENGTH);
+        byte[] signature = Arrays.copyOfRange(token, token.length - MAC_LENGTH, token.length);
+        if (!MessageDigest.isEqual(expectedSignature, signature)) {
+            throw new IllegalArgumentException("Session state signature does not match");
+        }
+
+        SessionState sessionState;
+        try {
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new IvParameterSpec(token, 1, IV_LENGTH));
+            sessionState = compactCodec.fromBytes(cipher.doFinal(token, 1 + IV_LENGTH, token.length - 1 - IV_LENGTH - MAC_LENGTH));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Could not decrypt session state", e);
+        }
+
+        if (System.currentTimeMillis() - sessionState.getIssuedAt() > maxAgeMillis) {
+            throw new IllegalArgumentException("Session state has expired");
+        }
+        return sessionState;
+    }
+
+    private byte[] sign(byte[] data, int length) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(signingKey);
+            mac.update(data, 0, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Could not sign session state", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] secret, String label) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(label.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
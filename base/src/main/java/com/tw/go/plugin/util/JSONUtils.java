@@ -1,13 +1,79 @@
 package com.tw.go.plugin.util;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.tw.go.plugin.User;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class JSONUtils {
+    public static final Type STRING_MAP = new TypeToken<Map<String, String>>() {
+    }.getType();
+
+    private static final Gson GSON = new GsonBuilder().create();
+
+    public static Gson gson() {
+        return GSON;
+    }
+
     public static Object fromJSON(String json) {
-        return new GsonBuilder().create().fromJson(json, Object.class);
+        return GSON.fromJson(json, Object.class);
+    }
+
+    public static <T> T fromJSON(String json, Class<T> type) {
+        return GSON.fromJson(json, type);
+    }
+
+    public static <T> T fromJSON(String json, Type type) {
+        return GSON.fromJson(json, type);
     }
 
     public static String toJSON(Object object) {
-        return new GsonBuilder().create().toJson(object);
+        return GSON.toJson(object);
+    }
+
+    public static String usersToJSON(List<User> users) {
+        StringWriter stringWriter = new StringWriter(users.size() * 96);
+        try {
+            JsonWriter writer = new JsonWriter(stringWriter);
+            writer.setSerializeNulls(false);
+            writer.beginArray();
+            for (User user : users) {
+                writer.beginObject();
+                writer.name("username").value(user.getUsername());
+                writer.name("display-name").value(user.getDisplayName());
+                writer.name("email-id").value(user.getEmailId());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return stringWriter.toString();
+    }
+
+    public static <T> List<T> readArray(Reader reader, Class<T> type, int limit) throws IOException {
+        List<T> elements = new ArrayList<T>();
+        JsonReader jsonReader = new JsonReader(reader);
+        if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+            return elements;
+        }
+        jsonReader.beginArray();
+        while (elements.size() < limit && jsonReader.hasNext()) {
+            T element = GSON.fromJson(jsonReader, type);
+            elements.add(element);
+        }
+        return elements;
     }
 }
@@ -0,0 +1,98 @@
+package com.tw.go.plugin.util;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import static com.tw.go.plugin.OAuthLoginPlugin.LOGGER;
+
+public class PluginDescriptor {
+    private final String pluginId;
+    private final String providerClassName;
+    private final byte[] image;
+    private final String imageETag;
+    private final String settingsTemplate;
+
+    public PluginDescriptor(String pluginId, String providerClassName, byte[] image, String settingsTemplate) {
+        this.pluginId = pluginId;
+        this.providerClassName = providerClassName;
+        this.image = image;
+        this.imageETag = "\"" + sha256Hex(image).substring(0, 32) + "\"";
+        this.settingsTemplate = settingsTemplate;
+    }
+
+    public static PluginDescriptor get() {
+        return Holder.INSTANCE;
+    }
+
+    public static PluginDescriptor load() {
+        Properties defaults = new Properties();
+        try {
+            defaults.load(new StringReader(Util.readResource("/defaults.properties")));
+        } catch (IOException e) {
+            LOGGER.error("Could not read plugin defaults", e);
+            throw new RuntimeException(e);
+        }
+
+        byte[] image;
+        try (InputStream resourceAsStream = PluginDescriptor.class.getResourceAsStream("/logo.png")) {
+            image = IOUtils.toByteArray(resourceAsStream);
+        } catch (IOException e) {
+            LOGGER.error("Could not load plugin image", e);
+            throw new RuntimeException(e);
+        }
+
+        String settingsTemplate = null;
+        if (PluginDescriptor.class.getResource("/plugin-settings.template.html") != null) {
+            settingsTemplate = Util.readResource("/plugin-settings.template.html");
+        }
+
+        return new PluginDescriptor(defaults.getProperty("pluginId"), defaults.getProperty("providerClass"), image, settingsTemplate);
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public String getProviderClassName() {
+        return providerClassName;
+    }
+
+    public Class<?> providerClass() throws ClassNotFoundException {
+        return Class.forName(providerClassName);
+    }
+
+    public byte[] getImage() {
+        return image.clone();
+    }
+
+    public String getImageETag() {
+        return imageETag;
+    }
+
+    public String getSettingsTemplate() {
+        return settingsTemplate;
+    }
+
+    private static String sha256Hex(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class Holder {
+        private static final PluginDescriptor INSTANCE = load();
+    }
+}
@@ -0,0 +1,138 @@
+package com.tw.go.plugin.util;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Pulls a handful of scalar fields out of a JSON response without building a tree, and stops reading as soon as
+// every requested field has been seen. Optionally also collects fields from each object of one top level array,
+// as found in paged listings such as {"values": [...], "next": "..."}.
+public class ProfileFieldExtractor {
+    private final Set<String> fields;
+    private final String elementsField;
+    private final Set<String> elementFields;
+
+    public ProfileFieldExtractor(String... fields) {
+        this(new HashSet<String>(Arrays.asList(fields)), null, Collections.<String>emptySet());
+    }
+
+    private ProfileFieldExtractor(Set<String> fields, String elementsField, Set<String> elementFields) {
+        this.fields = fields;
+        this.elementsField = elementsField;
+        this.elementFields = elementFields;
+    }
+
+    public ProfileFieldExtractor withElements(String elementsField, String... elementFields) {
+        return new ProfileFieldExtractor(fields, elementsField, new HashSet<String>(Arrays.asList(elementFields)));
+    }
+
+    public Extracted extract(InputStream inputStream) throws IOException {
+        return extract(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    // For callers that must keep the raw body anyway; it is carried on the result.
+    public Extracted extract(String rawResponse) throws IOException {
+        Extracted extracted = extract(new StringReader(rawResponse));
+        return new Extracted(extracted.values, extracted.elements, rawResponse);
+    }
+
+    public Extracted extract(Reader input) throws IOException {
+        Map<String, String> values = new HashMap<String, String>();
+        List<Map<String, String>> elements = new ArrayList<Map<String, String>>();
+        JsonReader reader = new JsonReader(input);
+        reader.beginObject();
+        boolean elementsRead = elementsField == null;
+        while (reader.hasNext() && !(elementsRead && values.size() == fields.size())) {
+            String name = reader.nextName();
+            if (fields.contains(name) && !values.containsKey(name)) {
+                String value = scalar(reader);
+                if (value != null) {
+                    values.put(name, value);
+                }
+            } else if (name.equals(elementsField) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    elements.add(element(reader));
+                }
+                reader.endArray();
+                elementsRead = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        return new Extracted(values, elements, null);
+    }
+
+    private Map<String, String> element(JsonReader reader) throws IOException {
+        Map<String, String> element = new HashMap<String, String>();
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return element;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (elementFields.contains(name)) {
+                String value = scalar(reader);
+                if (value != null) {
+                    element.put(name, value);
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return element;
+    }
+
+    private String scalar(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    public static class Extracted {
+        private final Map<String, String> values;
+        private final List<Map<String, String>> elements;
+        private final String rawResponse;
+
+        private Extracted(Map<String, String> values, List<Map<String, String>> elements, String rawResponse) {
+            this.values = values;
+            this.elements = elements;
+            this.rawResponse = rawResponse;
+        }
+
+        public String get(String field) {
+            return values.get(field);
+        }
+
+        public List<Map<String, String>> getElements() {
+            return elements;
+        }
+
+        public String getRawResponse() {
+            return rawResponse;
+        }
+    }
+}
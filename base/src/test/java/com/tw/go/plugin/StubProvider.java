@@ -0,0 +1,62 @@
+package com.tw.go.plugin;
+
+import com.tw.go.plugin.provider.Provider;
+import com.tw.go.plugin.util.Util;
+import org.brickred.socialauth.Permission;
+import org.brickred.socialauth.Profile;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static com.tw.go.plugin.OAuthLoginPlugin.*;
+
+public class StubProvider implements Provider<PluginSettings> {
+    private static final String PLUGIN_ID = Util.pluginId();
+
+    @Override
+    public String getPluginId() {
+        return PLUGIN_ID;
+    }
+
+    @Override
+    public String getName() {
+        return "Stub";
+    }
+
+    @Override
+    public String getProviderName() {
+        return "stub";
+    }
+
+    @Override
+    public Permission getAuthPermission() {
+        return Permission.AUTHENTICATE_ONLY;
+    }
+
+    @Override
+    public User getUser(Profile profile) {
+        return new User(profile.getEmail(), profile.getFullName(), profile.getEmail());
+    }
+
+    @Override
+    public List<User> searchUser(PluginSettings pluginSettings, String searchTerm) {
+        return null;
+    }
+
+    @Override
+    public boolean authorize(PluginSettings pluginSettings, User user) {
+        return true;
+    }
+
+    @Override
+    public Properties configure(PluginSettings pluginSettings) {
+        return new Properties();
+    }
+
+    @Override
+    public PluginSettings pluginSettings(Map<String, String> responseBodyMap) {
+        return new PluginSettings(responseBodyMap.get(PLUGIN_SETTINGS_SERVER_BASE_URL), responseBodyMap.get(PLUGIN_SETTINGS_CONSUMER_KEY),
+                responseBodyMap.get(PLUGIN_SETTINGS_CONSUMER_SECRET));
+    }
+}
@@ -0,0 +1,88 @@
+package com.tw.go.plugin.directory;
+
+import com.tw.go.plugin.PluginSettings;
+import com.tw.go.plugin.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectorySyncTest {
+
+    @Test
+    public void dropsSyncedUsersThatAreNoLongerListedAfterAFullPass() throws Exception {
+        PagedSource source = new PagedSource();
+        source.pages.put("page-1", Arrays.asList(new User("alice", null, null), new User("bob", null, null)));
+        source.pages.put("page-2", Arrays.asList(new User("carol", null, null)));
+        final UserDirectory directory = new UserDirectory();
+        final PluginSettings pluginSettings = settings("v1");
+        DirectorySync sync = new DirectorySync(source, new DirectorySync.Target() {
+            @Override
+            public PluginSettings pluginSettings() {
+                return pluginSettings;
+            }
+
+            @Override
+            public UserDirectory userDirectory(PluginSettings pluginSettings) {
+                return directory;
+            }
+        });
+
+        sync.synchronize();
+        directory.add(new User("dave", null, null));
+        directory.addKnown(Arrays.asList(new User("Bob", "Bob Builder", "bob@example.com")));
+        assertEquals(4, directory.size());
+        assertTrue(sync.isComplete(pluginSettings));
+        assertFalse(sync.isComplete(settings("v2")));
+
+        source.pages.put("page-1", Arrays.asList(new User("alice", null, null)));
+        source.pages.put("page-2", Arrays.asList(new User("erin", null, null)));
+        source.changed = "page-*";
+        sync.synchronize();
+
+        assertEquals(4, directory.size());
+        assertEquals(1, directory.search("alice", 10).size());
+        assertEquals(1, directory.search("erin", 10).size());
+        assertTrue(directory.search("carol", 10).isEmpty());
+        assertEquals(1, directory.search("dave", 10).size());
+        assertEquals("Bob Builder", directory.search("bob", 10).get(0).getDisplayName());
+    }
+
+    private PluginSettings settings(String fingerprint) {
+        PluginSettings pluginSettings = new PluginSettings("https://go.example.com", "key", "secret");
+        pluginSettings.setFingerprint(fingerprint);
+        return pluginSettings;
+    }
+
+    // Serves two pages and answers every page but the changed one ("page-*" for all) as unchanged once it has been read.
+    private static class PagedSource implements DirectorySource<PluginSettings> {
+        private final Map<String, List<User>> pages = new HashMap<String, List<User>>();
+        private String changed;
+
+        @Override
+        public boolean canSynchronize(PluginSettings pluginSettings) {
+            return true;
+        }
+
+        @Override
+        public void synchronize(PluginSettings pluginSettings, SyncCheckpoint checkpoint, UserSink sink) {
+            String url = "page-1";
+            while (url != null) {
+                if (checkpoint.getETag(url) != null && !"page-*".equals(changed) && !url.equals(changed)) {
+                    url = checkpoint.skipUnchangedPage(url);
+                    continue;
+                }
+                String next = url.equals("page-1") ? "page-2" : null;
+                sink.accept(pages.get(url));
+                checkpoint.recordPage(url, "etag-" + url, next);
+                url = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.tw.go.plugin.directory;
+
+import com.tw.go.plugin.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class KnownUsersStoreTest {
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("known-users", ".json");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void persistsRecordedUsers() throws Exception {
+        KnownUsersStore store = new KnownUsersStore(file, 10);
+        store.record(new User("bob", "Bob", "bob@example.com"));
+        store.record(new User("alice", null, null));
+        store.save();
+
+        List<User> users = new KnownUsersStore(file, 10).users();
+        assertEquals(Arrays.asList("bob", "alice"), usernames(users));
+        assertEquals("bob@example.com", users.get(0).getEmailId());
+    }
+
+    @Test
+    public void keepsOnlyTheMostRecentLogins() throws Exception {
+        KnownUsersStore store = new KnownUsersStore(file, 2);
+        store.record(new User("bob", null, null));
+        store.record(new User("alice", null, null));
+        store.record(new User("Bob", null, null));
+        store.record(new User("carol", null, null));
+
+        assertEquals(Arrays.asList("Bob", "carol"), usernames(store.users()));
+    }
+
+    @Test
+    public void keepsUsersInMemoryWhenNoDataDirIsConfigured() throws Exception {
+        System.clearProperty(KnownUsersStore.DATA_DIR_PROPERTY);
+        KnownUsersStore store = KnownUsersStore.forPlugin("stub.oauth.login");
+        store.record(new User("bob", null, null));
+        store.save();
+
+        assertEquals(Arrays.asList("bob"), usernames(store.users()));
+        assertFalse(new File(System.getProperty("user.dir"), "stub.oauth.login-known-users.json").exists());
+    }
+
+    private List<String> usernames(List<User> users) {
+        List<String> usernames = new ArrayList<String>();
+        for (User user : users) {
+            usernames.add(user.getUsername());
+        }
+        return usernames;
+    }
+}
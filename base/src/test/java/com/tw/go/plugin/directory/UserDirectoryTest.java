@@ -0,0 +1,93 @@
+package com.tw.go.plugin.directory;
+
+import com.tw.go.plugin.User;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UserDirectoryTest {
+    private static final int USERS = 100000;
+
+    @Test
+    public void matchesPrefixesOfLoginDisplayNameAndEmail() throws Exception {
+        UserDirectory directory = new UserDirectory();
+        directory.addAll(Arrays.asList(
+                new User("jdoe", "John Doe", "john.doe@example.com"),
+                new User("asmith", "Alice Smith", "alice@corp.example.com")));
+
+        assertEquals(Arrays.asList("jdoe"), usernames(directory.search("jd", 10)));
+        assertEquals(Arrays.asList("jdoe"), usernames(directory.search("Doe", 10)));
+        assertEquals(Arrays.asList("asmith"), usernames(directory.search("corp", 10)));
+        assertEquals(Arrays.asList("asmith"), usernames(directory.search("alice smi", 10)));
+        assertTrue(directory.search("oe", 10).isEmpty());
+        assertTrue(directory.search(" ", 10).isEmpty());
+    }
+
+    @Test
+    public void replacesUsersWithTheSameLogin() throws Exception {
+        UserDirectory directory = new UserDirectory();
+        directory.add(new User("jdoe", "John Doe", null));
+        directory.add(new User("JDoe", "Jane Doe", null));
+
+        assertEquals(1, directory.size());
+        assertTrue(directory.search("john", 10).isEmpty());
+        assertEquals("Jane Doe", directory.search("jane", 10).get(0).getDisplayName());
+    }
+
+    @Test
+    public void keepsKnownNamesWhenAUserIsSeenAgainWithoutThem() throws Exception {
+        UserDirectory directory = new UserDirectory();
+        directory.addKnown(Arrays.asList(new User("jdoe", "John Doe", "john@example.com")));
+        directory.addSynced(Arrays.asList(new User("JDoe", null, null)));
+
+        User user = directory.search("john", 10).get(0);
+        assertEquals("JDoe", user.getUsername());
+        assertEquals("John Doe", user.getDisplayName());
+        assertEquals("john@example.com", user.getEmailId());
+    }
+
+    @Test
+    public void searchesIndexedAndRecentlyAddedUsers() throws Exception {
+        UserDirectory directory = new UserDirectory();
+        List<User> users = new ArrayList<User>();
+        for (int i = 0; i < 5000; i++) {
+            users.add(new User("user" + i, "User " + i, "user" + i + "@example.com"));
+        }
+        directory.addAll(users);
+        directory.add(new User("user5000", "Latecomer", null));
+        directory.add(new User("user10", "Renamed", null));
+
+        assertEquals(2, directory.search("user500", 10).size());
+        assertEquals(Arrays.asList("user10"), usernames(directory.search("renamed", 10)));
+        assertEquals(10, directory.search("user", 10).size());
+    }
+
+    @Test
+    public void findsUsersInALargeDirectory() throws Exception {
+        UserDirectory directory = new UserDirectory();
+        List<User> users = new ArrayList<User>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new User("login" + i, "First" + i + " Last" + (i % 977), "person" + i + "@domain" + (i % 31) + ".com"));
+        }
+        directory.addAll(users);
+
+        assertEquals(USERS, directory.size());
+        assertEquals(Arrays.asList("login99999"), usernames(directory.search("person99999@", 10)));
+        assertEquals(Arrays.asList("login0"), usernames(directory.search("first0 ", 10)));
+        assertEquals(10, directory.search("last976", 10).size());
+        assertTrue(directory.search("person100000@", 10).isEmpty());
+    }
+
+    private List<String> usernames(List<User> users) {
+        List<String> usernames = new ArrayList<String>();
+        for (User user : users) {
+            usernames.add(user.getUsername());
+        }
+        return usernames;
+    }
+}
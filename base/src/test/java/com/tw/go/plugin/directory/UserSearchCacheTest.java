@@ -0,0 +1,118 @@
+package com.tw.go.plugin.directory;
+
+import com.tw.go.plugin.User;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class UserSearchCacheTest {
+    private static final List<User> USERS = Arrays.asList(
+            new User("jdoe", "John Doe", "john@example.com"),
+            new User("jsmith", "Jane Smith", "jane@example.com"),
+            new User("bob", "Bob", "bob@example.com"));
+
+    @Test
+    public void concurrentIdenticalSearchesShareOneUpstreamCall() throws Exception {
+        final UserSearchCache cache = new UserSearchCache();
+        final UserSearchCache.Search upstream = new SlowSearch(200);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<User>>> searches = new ArrayList<Future<List<User>>>();
+        for (int i = 0; i < 8; i++) {
+            searches.add(executor.submit(new Callable<List<User>>() {
+                @Override
+                public List<User> call() throws Exception {
+                    return cache.search("settings", "Jo", 10, upstream);
+                }
+            }));
+        }
+        for (Future<List<User>> search : searches) {
+            assertEquals(1, search.get().size());
+        }
+        executor.shutdown();
+
+        assertEquals(1, cache.getUpstreamSearches());
+    }
+
+    @Test
+    public void refinesCompleteResultsForLongerTerms() throws Exception {
+        UserSearchCache cache = new UserSearchCache();
+        UserSearchCache.Search upstream = new SlowSearch(0);
+
+        assertEquals(2, cache.search("settings", "j", 10, upstream).size());
+        assertEquals(1, cache.search("settings", "jan", 10, upstream).size());
+        assertEquals(1, cache.search("settings", "jo", 10, upstream).size());
+        assertEquals(2, cache.search("settings", "J", 10, upstream).size());
+        assertEquals(1, cache.getUpstreamSearches());
+
+        cache.search("other-settings", "jo", 10, upstream);
+        assertEquals(2, cache.getUpstreamSearches());
+    }
+
+    @Test
+    public void searchesUpstreamWhenThePrefixResultWasTruncated() throws Exception {
+        UserSearchCache cache = new UserSearchCache();
+        UserSearchCache.Search upstream = new SlowSearch(0);
+
+        assertEquals(2, cache.search("settings", "j", 2, upstream).size());
+        assertEquals(1, cache.search("settings", "jo", 2, upstream).size());
+        assertEquals(2, cache.getUpstreamSearches());
+    }
+
+    @Test
+    public void doesNotKeepFailedSearches() throws Exception {
+        UserSearchCache cache = new UserSearchCache();
+        FailingSearch upstream = new FailingSearch();
+
+        upstream.failing = true;
+        assertEquals(0, cache.search("settings", "j", 10, upstream).size());
+        upstream.failing = false;
+        assertEquals(1, cache.search("settings", "jo", 10, upstream).size());
+        assertEquals(2, cache.search("settings", "j", 10, upstream).size());
+        assertEquals(3, cache.getUpstreamSearches());
+    }
+
+    private static class FailingSearch extends SlowSearch {
+        private volatile boolean failing;
+
+        private FailingSearch() {
+            super(0);
+        }
+
+        @Override
+        public List<User> search(String searchTerm) {
+            return failing ? null : super.search(searchTerm);
+        }
+    }
+
+    private static class SlowSearch implements UserSearchCache.Search {
+        private final long latencyMillis;
+
+        private SlowSearch(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public List<User> search(String searchTerm) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<User> matches = new ArrayList<User>();
+            for (User user : USERS) {
+                if (user.getUsername().contains(searchTerm) || user.getDisplayName().toLowerCase().contains(searchTerm)) {
+                    matches.add(user);
+                }
+            }
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.tw.go.plugin.policy;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AuthorizationPolicyTest {
+    private static final int ENTRIES = 10000;
+
+    @Test
+    public void matchesDomainOfTheUsername() throws Exception {
+        AuthorizationPolicy policy = AuthorizationPolicy.compile(" foo.com, Bar.com,,", null, null);
+
+        assertTrue(policy.hasDomains());
+        assertTrue(policy.matchesDomain("bob@foo.com"));
+        assertTrue(policy.matchesDomain("bob@bar.COM"));
+        assertFalse(policy.matchesDomain("bob@foo.com@example.com"));
+        assertTrue(policy.matchesDomain("bob@eng.sub.foo.com"));
+        assertFalse(policy.matchesDomain("bob@notfoo.com"));
+        assertFalse(policy.matchesDomain("bob@com"));
+        assertFalse(policy.matchesDomain("foo.com"));
+        assertFalse(policy.matchesDomain(null));
+    }
+
+    @Test
+    public void matchesUsernameAgainstCompiledPattern() throws Exception {
+        AuthorizationPolicy policy = AuthorizationPolicy.compile(null, " .*@(foo.com|bar.com)$ ", null);
+
+        assertTrue(policy.hasUsernamePattern());
+        assertTrue(policy.matchesUsername("bob@foo.com"));
+        assertFalse(policy.matchesUsername("bob@foo.com@example.com"));
+        assertFalse(AuthorizationPolicy.compile(null, "(", null).matchesUsername("bob@foo.com"));
+        assertFalse(AuthorizationPolicy.compile(null, " ", null).hasUsernamePattern());
+    }
+
+    @Test
+    public void intersectsGroupsIgnoringCase() throws Exception {
+        AuthorizationPolicy policy = AuthorizationPolicy.forGroups("Admins, devs");
+
+        assertEquals("devs", policy.firstMatchingGroup(Arrays.asList("qa", "DEVS")));
+        assertTrue(policy.matchesAnyGroup(Arrays.asList("admins")));
+        assertFalse(policy.matchesAnyGroup(Arrays.asList("qa")));
+        assertNull(policy.firstMatchingGroup(null));
+        assertFalse(AuthorizationPolicy.forGroups(null).hasGroups());
+    }
+
+    @Test
+    public void compilesLargePoliciesIntoExactLookups() throws Exception {
+        StringBuilder domains = new StringBuilder();
+        StringBuilder teams = new StringBuilder();
+        List<String> memberships = new ArrayList<String>();
+        for (int i = 0; i < ENTRIES; i++) {
+            domains.append("domain").append(i).append(".example.com,");
+            teams.append("team-").append(i).append(',');
+            memberships.add("other-team-" + i);
+        }
+
+        AuthorizationPolicy policy = AuthorizationPolicy.compile(domains.toString(), null, teams.toString());
+
+        assertEquals(ENTRIES, policy.getGroups().size());
+        assertTrue(policy.matchesDomain("bob@domain" + (ENTRIES - 1) + ".example.com"));
+        assertFalse(policy.matchesDomain("bob@domain" + ENTRIES + ".example.com"));
+        assertFalse(policy.matchesAnyGroup(memberships));
+        memberships.add("Team-" + (ENTRIES - 1));
+        assertEquals("team-" + (ENTRIES - 1), policy.firstMatchingGroup(memberships));
+    }
+}
@@ -0,0 +1,120 @@
+package com.tw.go.plugin.provider;
+
+import com.tw.go.plugin.PluginSettings;
+import com.tw.go.plugin.StubProvider;
+import com.tw.go.plugin.User;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CachingProviderTest {
+
+    @Test
+    public void cachesDecisionsPerSettingsFingerprintAndUser() throws Exception {
+        CountingProvider delegate = new CountingProvider(true);
+        CachingProvider<PluginSettings> provider = new CachingProvider<PluginSettings>(delegate);
+
+        assertTrue(provider.authorize(settings("v1"), new User("bob", null, null)));
+        assertTrue(provider.authorize(settings("v1"), new User("bob", null, null)));
+        assertEquals(1, delegate.calls.get());
+
+        provider.authorize(settings("v1"), new User("alice", null, null));
+        provider.authorize(settings("v2"), new User("bob", null, null));
+        assertEquals(3, delegate.calls.get());
+    }
+
+    @Test
+    public void expiresNegativeDecisionsSooner() throws Exception {
+        CountingProvider delegate = new CountingProvider(false);
+        CachingProvider<PluginSettings> provider = new CachingProvider<PluginSettings>(delegate, 60000, 0, 0, 0, 100);
+
+        assertFalse(provider.authorize(settings("v1"), new User("bob", null, null)));
+        assertFalse(provider.authorize(settings("v1"), new User("bob", null, null)));
+        assertEquals(2, delegate.calls.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedDecisions() throws Exception {
+        CountingProvider delegate = new CountingProvider(true);
+        CachingProvider<PluginSettings> provider = new CachingProvider<PluginSettings>(delegate, 60000, 60000, 0, 0, 2);
+
+        provider.authorize(settings("v1"), new User("bob", null, null));
+        provider.authorize(settings("v1"), new User("alice", null, null));
+        provider.authorize(settings("v1"), new User("bob", null, null));
+        provider.authorize(settings("v1"), new User("eve", null, null));
+        assertEquals(3, delegate.calls.get());
+
+        provider.authorize(settings("v1"), new User("bob", null, null));
+        assertEquals(3, delegate.calls.get());
+        provider.authorize(settings("v1"), new User("alice", null, null));
+        assertEquals(4, delegate.calls.get());
+    }
+
+    @Test
+    public void revalidatesExpiredAllowDecisionsInsteadOfServingThemStale() throws Exception {
+        CountingProvider delegate = new CountingProvider(true);
+        CachingProvider<PluginSettings> provider = new CachingProvider<PluginSettings>(delegate, 1, 1, 60000, 0, 100);
+
+        assertTrue(provider.authorize(settings("v1"), new User("bob", null, null)));
+        Thread.sleep(5);
+        delegate.authorized = false;
+        assertFalse(provider.authorize(settings("v1"), new User("bob", null, null)));
+    }
+
+    @Test
+    public void servesExpiredAllowDecisionsWhenUpstreamFails() throws Exception {
+        CountingProvider delegate = new CountingProvider(true);
+        CachingProvider<PluginSettings> provider = new CachingProvider<PluginSettings>(delegate, 1, 1, 60000, 0, 100);
+
+        assertTrue(provider.authorize(settings("v1"), new User("bob", null, null)));
+        Thread.sleep(5);
+        delegate.failing = true;
+        assertTrue(provider.authorize(settings("v1"), new User("bob", null, null)));
+    }
+
+    @Test
+    public void deniesExpiredAllowDecisionsWhenUpstreamDoesNotAnswerInTime() throws Exception {
+        CountingProvider delegate = new CountingProvider(true);
+        CachingProvider<PluginSettings> provider = new CachingProvider<PluginSettings>(delegate, 1, 1, 60000, 0, 50, 100);
+
+        assertTrue(provider.authorize(settings("v1"), new User("bob", null, null)));
+        Thread.sleep(5);
+        delegate.latencyMillis = 5000;
+        assertFalse(provider.authorize(settings("v1"), new User("bob", null, null)));
+    }
+
+    private PluginSettings settings(String fingerprint) {
+        PluginSettings pluginSettings = new PluginSettings("https://go.example.com", "key", "secret");
+        pluginSettings.setFingerprint(fingerprint);
+        return pluginSettings;
+    }
+
+    private static class CountingProvider extends StubProvider {
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile boolean authorized;
+        private volatile boolean failing;
+        private volatile long latencyMillis;
+
+        private CountingProvider(boolean authorized) {
+            this.authorized = authorized;
+        }
+
+        @Override
+        public boolean authorize(PluginSettings pluginSettings, User user) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new RuntimeException("upstream unavailable");
+            }
+            return authorized;
+        }
+    }
+}
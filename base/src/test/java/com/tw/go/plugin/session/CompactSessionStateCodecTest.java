@@ -0,0 +1,34 @@
+package com.tw.go.plugin.session;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompactSessionStateCodecTest {
+    private final SessionState sessionState = SessionState.create("github", "https://go.example.com/go/plugin/interact/github.oauth.login/authenticate");
+
+    @Test
+    public void roundTripsSessionState() throws Exception {
+        CompactSessionStateCodec codec = new CompactSessionStateCodec();
+
+        assertEquals(sessionState, codec.decode(codec.encode(sessionState)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVersion() throws Exception {
+        CompactSessionStateCodec codec = new CompactSessionStateCodec();
+        byte[] bytes = codec.toBytes(sessionState);
+        bytes[0] = 42;
+
+        codec.fromBytes(bytes);
+    }
+
+    @Test
+    public void producesSmallerPayloadThanTheSerializedManager() throws Exception {
+        String compact = new CompactSessionStateCodec().encode(sessionState);
+        String serialized = SerializedManagerPayload.encode(SerializedManagerPayload.manager(sessionState.getSuccessUrl()));
+
+        assertTrue(String.format("compact=%d serialized=%d", compact.length(), serialized.length()), compact.length() * 10 < serialized.length());
+    }
+}
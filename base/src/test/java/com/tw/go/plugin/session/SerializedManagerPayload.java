@@ -0,0 +1,41 @@
+package com.tw.go.plugin.session;
+
+import org.apache.commons.codec.binary.Base64;
+import org.brickred.socialauth.Permission;
+import org.brickred.socialauth.SocialAuthConfig;
+import org.brickred.socialauth.SocialAuthManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Properties;
+
+// What the plugin used to put in the GoCD session before SessionStateCodec: the whole SocialAuthManager after the
+// login redirect was built, Java serialized and Base64 encoded. Only kept to compare the compact codec against.
+public class SerializedManagerPayload {
+    public static SocialAuthManager manager(String successUrl) throws Exception {
+        Properties properties = new Properties();
+        properties.put("googleapis.com.consumer_key", "1234567890-abcdefghijklmnopqrstuvwxyz012345.apps.googleusercontent.com");
+        properties.put("googleapis.com.consumer_secret", "abcdefghijklmnopqrstuvwx");
+        SocialAuthConfig config = SocialAuthConfig.getDefault();
+        config.load(properties);
+        SocialAuthManager manager = new SocialAuthManager();
+        manager.setSocialAuthConfig(config);
+        manager.getAuthenticationUrl("googleplus", successUrl, Permission.AUTHENTICATE_ONLY);
+        return manager;
+    }
+
+    public static String encode(SocialAuthManager manager) throws Exception {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+        objectOutputStream.writeObject(manager);
+        objectOutputStream.flush();
+        return new String(Base64.encodeBase64(byteArrayOutputStream.toByteArray()));
+    }
+
+    public static SocialAuthManager decode(String encoded) throws Exception {
+        ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(Base64.decodeBase64(encoded.getBytes())));
+        return (SocialAuthManager) objectInputStream.readObject();
+    }
+}
@@ -0,0 +1,37 @@
+package com.tw.go.plugin.session;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SignedSessionStateCodecTest {
+    private final SessionState sessionState = SessionState.create("github", "https://go.example.com/go/plugin/interact/github.oauth.login/authenticate");
+
+    @Test
+    public void roundTripsSessionState() throws Exception {
+        SignedSessionStateCodec codec = new SignedSessionStateCodec("secret");
+
+        assertEquals(sessionState, codec.decode(codec.encode(sessionState)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsStateSignedWithAnotherSecret() throws Exception {
+        new SignedSessionStateCodec("secret").decode(new SignedSessionStateCodec("another-secret").encode(sessionState));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTamperedState() throws Exception {
+        String encoded = new SignedSessionStateCodec("secret").encode(sessionState);
+        char[] chars = encoded.toCharArray();
+        chars[10] = chars[10] == 'A' ? 'B' : 'A';
+
+        new SignedSessionStateCodec("secret").decode(new String(chars));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsExpiredState() throws Exception {
+        SessionState expired = new SessionState("github", "state", "https://go.example.com", System.currentTimeMillis() - 60000);
+
+        new SignedSessionStateCodec("secret", 1000).decode(new SignedSessionStateCodec("secret").encode(expired));
+    }
+}
@@ -0,0 +1,39 @@
+package com.tw.go.plugin.util;
+
+import com.tw.go.plugin.OAuthLoginPlugin;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PluginDescriptorTest {
+
+    @Test
+    public void loadsPluginDefaultsAndResources() throws Exception {
+        PluginDescriptor descriptor = PluginDescriptor.load();
+
+        assertEquals("stub.oauth.login", descriptor.getPluginId());
+        assertEquals("com.tw.go.plugin.StubProvider", descriptor.getProviderClassName());
+        assertEquals((byte) 0x89, descriptor.getImage()[0]);
+        assertEquals("PNG", new String(descriptor.getImage(), 1, 3, "US-ASCII"));
+        assertNotNull(descriptor.getSettingsTemplate());
+    }
+
+    @Test
+    public void sharesOneDescriptorAcrossCalls() throws Exception {
+        assertEquals(PluginDescriptor.get().getPluginId(), Util.pluginId());
+        assertTrue(PluginDescriptor.get() == PluginDescriptor.get());
+    }
+
+    @Test
+    public void pluginInstancesReuseTheLoadedDescriptor() throws Exception {
+        PluginDescriptor descriptor = PluginDescriptor.get();
+
+        new OAuthLoginPlugin();
+        new OAuthLoginPlugin();
+
+        assertSame(descriptor, PluginDescriptor.get());
+    }
+}
@@ -0,0 +1,86 @@
+package com.tw.go.plugin.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProfileFieldExtractorTest {
+    @Test
+    public void extractsScalarFieldsAndSkipsTheRest() throws Exception {
+        ProfileFieldExtractor.Extracted extracted = new ProfileFieldExtractor("id", "name", "email", "login")
+                .extract(new StringReader("{\"id\":42,\"identities\":[{\"id\":7}],\"name\":\"Bob\",\"email\":null,\"state\":\"active\"}"));
+
+        assertEquals("42", extracted.get("id"));
+        assertEquals("Bob", extracted.get("name"));
+        assertNull(extracted.get("email"));
+        assertNull(extracted.get("login"));
+        assertNull(extracted.getRawResponse());
+    }
+
+    @Test
+    public void collectsFieldsOfListingElements() throws Exception {
+        String page = "{\"pagelen\":2,\"values\":[{\"email\":\"a@example.com\",\"is_primary\":false,\"links\":{}},{\"email\":\"b@example.com\",\"is_primary\":true}],\"next\":\"https://next\"}";
+        ProfileFieldExtractor.Extracted extracted = new ProfileFieldExtractor("next").withElements("values", "email", "is_primary").extract(page);
+
+        assertEquals("https://next", extracted.get("next"));
+        assertEquals(2, extracted.getElements().size());
+        Map<String, String> primary = extracted.getElements().get(1);
+        assertEquals("b@example.com", primary.get("email"));
+        assertEquals("true", primary.get("is_primary"));
+        assertEquals(page, extracted.getRawResponse());
+    }
+
+    @Test
+    public void stopsReadingOnceEveryFieldIsFound() throws Exception {
+        String profile = largeProfile();
+        CountingReader reader = new CountingReader(profile);
+
+        new ProfileFieldExtractor("id", "name", "email", "username").extract(reader);
+
+        assertTrue(reader.read < profile.length() / 10);
+    }
+
+    @Test
+    public void skipsLargeNestedValuesToReachLaterFields() throws Exception {
+        String profile = largeProfile().replace("\"bio\":\"\"", "\"bio\":\"Builds things\"");
+        JsonObject tree = new JsonParser().parse(profile).getAsJsonObject();
+
+        ProfileFieldExtractor.Extracted extracted = new ProfileFieldExtractor("id", "name", "bio", "two_factor_enabled").extract(new StringReader(profile));
+
+        assertEquals(tree.get("id").getAsString(), extracted.get("id"));
+        assertEquals(tree.get("name").getAsString(), extracted.get("name"));
+        assertEquals("Builds things", extracted.get("bio"));
+        assertEquals("true", extracted.get("two_factor_enabled"));
+    }
+
+    private String largeProfile() {
+        StringBuilder profile = new StringBuilder("{\"id\":42,\"username\":\"bob\",\"name\":\"Bob\",\"email\":\"bob@example.com\",\"state\":\"active\",\"identities\":[");
+        for (int i = 0; i < 1000; i++) {
+            profile.append(i == 0 ? "" : ",").append(String.format("{\"provider\":\"ldap%d\",\"extern_uid\":\"uid=bob,ou=people%d,dc=example,dc=com\",\"saml_provider_id\":null}", i, i));
+        }
+        return profile.append("],\"bio\":\"\",\"two_factor_enabled\":true}").toString();
+    }
+
+    private static class CountingReader extends StringReader {
+        private int read;
+
+        private CountingReader(String value) {
+            super(value);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            read += Math.max(0, count);
+            return count;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.tw.go.plugin.provider.bitbucket;
 
 import com.tw.go.plugin.User;
+import com.tw.go.plugin.policy.AuthorizationPolicy;
 
 import java.util.List;
 
@@ -12,15 +13,11 @@ public class BitBucketUser extends User {
         this.teams = teams;
     }
 
-    public boolean belongsToTeam(String team) {
-        return teams.contains(team);
+    public List<String> getTeams() {
+        return teams;
     }
 
-    public boolean belongsToOneOfTheTeams(List<String> teams) {
-        for(String team : teams) {
-           if(belongsToTeam(team)) return true;
-        }
-
-        return false;
+    public boolean belongsToOneOfTheTeams(AuthorizationPolicy policy) {
+        return policy != null && policy.matchesAnyGroup(teams);
     }
 }
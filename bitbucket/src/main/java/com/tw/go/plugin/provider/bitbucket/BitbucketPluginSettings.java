@@ -1,17 +1,20 @@
 package com.tw.go.plugin.provider.bitbucket;
 
 import com.tw.go.plugin.PluginSettings;
+import com.tw.go.plugin.policy.AuthorizationPolicy;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 
 public class BitbucketPluginSettings extends PluginSettings {
 
     private List<String> authorizedTeams;
+    private AuthorizationPolicy authorizationPolicy;
 
     public BitbucketPluginSettings(String serverBaseURL, String consumerKey, String consumerSecret, String authorizedTeams) {
         super(serverBaseURL, consumerKey, consumerSecret);
-        this.authorizedTeams = Arrays.asList(authorizedTeams.split(","));
+        this.authorizationPolicy = AuthorizationPolicy.forGroups(authorizedTeams);
+        this.authorizedTeams = new ArrayList<>(authorizationPolicy.getGroups());
     }
 
     public BitbucketPluginSettings() {
@@ -21,4 +24,8 @@ public class BitbucketPluginSettings extends PluginSettings {
     public List<String> getAuthorizedTeams() {
         return authorizedTeams;
     }
+
+    public AuthorizationPolicy getAuthorizationPolicy() {
+        return authorizationPolicy;
+    }
 }
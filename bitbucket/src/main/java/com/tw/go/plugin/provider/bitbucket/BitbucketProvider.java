@@ -3,6 +3,7 @@ package com.tw.go.plugin.provider.bitbucket;
 import com.tw.go.plugin.User;
 import com.tw.go.plugin.provider.Provider;
 import com.tw.go.plugin.util.Util;
+import org.apache.commons.lang.StringUtils;
 import org.brickred.socialauth.Permission;
 import org.brickred.socialauth.Profile;
 
@@ -17,7 +18,6 @@ import static com.tw.go.plugin.OAuthLoginPlugin.PLUGIN_SETTINGS_SERVER_BASE_URL;
 
 public class BitbucketProvider implements Provider<BitbucketPluginSettings> {
 
-    private static final String IMAGE = Util.pluginImage();
     private static final String PLUGIN_ID = Util.pluginId();
     public static final String PLUGIN_SETTINGS_AUTHORIZED_TEAMS = "authorized_teams";
 
@@ -31,11 +31,6 @@ public class BitbucketProvider implements Provider<BitbucketPluginSettings> {
         return "bitbucket";
     }
 
-    @Override
-    public String getImageURL() {
-        return IMAGE;
-    }
-
     @Override
     public String getProviderName() {
         return "bitbucket";
@@ -65,7 +60,7 @@ public class BitbucketProvider implements Provider<BitbucketPluginSettings> {
     public boolean authorize(BitbucketPluginSettings pluginSettings, User user) {
         if(user instanceof BitBucketUser) {
             BitBucketUser bitBucketUser = (BitBucketUser) user;
-            return bitBucketUser.belongsToOneOfTheTeams(pluginSettings.getAuthorizedTeams());
+            return bitBucketUser.belongsToOneOfTheTeams(pluginSettings.getAuthorizationPolicy());
         }
         return false;
     }
@@ -81,6 +76,7 @@ public class BitbucketProvider implements Provider<BitbucketPluginSettings> {
         properties.put("bitbucket.authentication_url", "https://bitbucket.org/site/oauth2/authorize");
         properties.put("bitbucket.access_token_url", "https://bitbucket.org/site/oauth2/access_token");
         properties.put("bitbucket.server_base_url", pluginSettings.getServerBaseURL());
+        properties.put("bitbucket.custom." + PLUGIN_SETTINGS_AUTHORIZED_TEAMS, StringUtils.join(pluginSettings.getAuthorizedTeams(), ","));
 
         return properties;
     }
@@ -1,6 +1,10 @@
 package com.tw.go.plugin.provider.bitbucket;
 
 import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.policy.AuthorizationPolicy;
+import com.tw.go.plugin.util.DaemonThreadFactory;
+import com.tw.go.plugin.util.ProfileFieldExtractor;
+import com.tw.go.plugin.util.ProfileFieldExtractor.Extracted;
 import org.brickred.socialauth.AbstractProvider;
 import org.brickred.socialauth.Contact;
 import org.brickred.socialauth.Permission;
@@ -14,14 +18,21 @@ import org.brickred.socialauth.util.AccessGrant;
 import org.brickred.socialauth.util.Constants;
 import org.brickred.socialauth.util.OAuthConfig;
 import org.brickred.socialauth.util.Response;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static java.lang.String.format;
 
@@ -29,6 +40,14 @@ import static java.lang.String.format;
 public class BitbucketProviderImpl extends AbstractProvider {
 
     private static Logger LOGGER = Logger.getLoggerFor(BitbucketProviderImpl.class);
+    private static final int PROFILE_REQUEST_THREADS = 6;
+    private static final long PROFILE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final ExecutorService PROFILE_REQUESTS = profileRequestExecutor();
+    private static final BitbucketTeamCache TEAM_CACHE = new BitbucketTeamCache();
+    private static final String TEAMS_URL = "https://api.bitbucket.org/2.0/teams?role=member&pagelen=100";
+    private static final ProfileFieldExtractor USER_FIELDS = new ProfileFieldExtractor("uuid", "username", "display_name");
+    private static final ProfileFieldExtractor EMAIL_FIELDS = new ProfileFieldExtractor().withElements("values", "email", "is_primary");
+    private static final ProfileFieldExtractor TEAM_FIELDS = new ProfileFieldExtractor("next").withElements("values", "username");
 
     private final HashMap<String, String> endpoints;
     private final OAuth2 authenticationStrategy;
@@ -53,38 +72,124 @@ public class BitbucketProviderImpl extends AbstractProvider {
         authenticationStrategy.setScope(getScope());
     }
 
+    // The three calls are independent, so they run concurrently against one deadline and a login costs a single
+    // round trip to bitbucket.org instead of three.
     @Override
     public Profile getUserProfile() throws Exception {
-        String profilesResponse = authenticationStrategy.executeFeed("https://api.bitbucket.org/2.0/user").getResponseBodyAsString(Constants.ENCODING);
-        String emailsResponse = authenticationStrategy.executeFeed("https://api.bitbucket.org/2.0/user/emails").getResponseBodyAsString(Constants.ENCODING);
-        String teamsResponse = authenticationStrategy.executeFeed("https://api.bitbucket.org/2.0/teams?role=member").getResponseBodyAsString(Constants.ENCODING);
+        AuthorizationPolicy teamPolicy = AuthorizationPolicy.forGroups(authorizedTeams());
+        Future<Extracted> profilesRequest = PROFILE_REQUESTS.submit(feed("https://api.bitbucket.org/2.0/user", USER_FIELDS, config.isSaveRawResponse()));
+        Future<Extracted> emailsRequest = PROFILE_REQUESTS.submit(feed("https://api.bitbucket.org/2.0/user/emails?q=is_primary%3Dtrue", EMAIL_FIELDS, false));
+        Future<Extracted> teamsRequest = teamPolicy.hasGroups() ? PROFILE_REQUESTS.submit(feed(TEAMS_URL, TEAM_FIELDS, false)) : null;
 
-        JSONObject profiles = new JSONObject(profilesResponse);
-        JSONObject emails = new JSONObject(emailsResponse);
-        JSONObject teams = new JSONObject(teamsResponse);
+        long deadline = System.currentTimeMillis() + PROFILE_TIMEOUT_MILLIS;
+        Extracted profiles = await(profilesRequest, deadline, emailsRequest, teamsRequest);
+        Extracted emails = await(emailsRequest, deadline, teamsRequest);
 
         BitBucketProfile profile = new BitBucketProfile();
 
-        profile.setDisplayName(profiles.getString("username"));
-        profile.setFullName(profiles.getString("display_name"));
+        profile.setDisplayName(profiles.get("username"));
+        profile.setFullName(profiles.get("display_name"));
+        if (profiles.getRawResponse() != null) {
+            profile.setRawResponse(profiles.getRawResponse());
+        }
 
-        JSONArray emailValues = emails.getJSONArray("values");
+        for (Map<String, String> email : emails.getElements()) {
+            if ("true".equals(email.get("is_primary"))) {
+                profile.setEmail(email.get("email"));
+            }
+        }
 
-        for(Object emailObject : emailValues) {
-            JSONObject email = (JSONObject) emailObject;
-            if(email.getBoolean("is_primary")) {
-                profile.setEmail(email.getString("email"));
+        if (teamsRequest != null) {
+            for (String team : resolveTeams(profiles.get("uuid"), teamPolicy, teamsRequest, deadline)) {
+                profile.addTeam(team);
             }
         }
 
-        JSONArray teamValues = teams.getJSONArray("values");
+        return profile;
+    }
 
-        for(Object teamObject : teamValues) {
-            JSONObject team = (JSONObject) teamObject;
-            profile.addTeam(team.getString("username"));
+    // Walks the team pages one at a time and stops at the first page containing an authorized team, so a user in
+    // many teams is not paged through completely. The matched team is remembered for repeat logins by account uuid;
+    // the uuid only arrives with /2.0/user, so a cache hit saves the later team pages rather than the first one.
+    private List<String> resolveTeams(String uuid, AuthorizationPolicy teamPolicy, Future<Extracted> firstPage, long deadline) throws Exception {
+        String cacheKey = authorizedTeams();
+        List<String> cached = TEAM_CACHE.get(uuid, cacheKey);
+        if (cached != null) {
+            firstPage.cancel(true);
+            return cached;
         }
 
-        return profile;
+        List<String> teams = new ArrayList<>();
+        Future<Extracted> page = firstPage;
+        while (page != null) {
+            Extracted response = await(page, deadline);
+            List<String> pageTeams = new ArrayList<>();
+            for (Map<String, String> team : response.getElements()) {
+                if (team.get("username") != null) {
+                    pageTeams.add(team.get("username"));
+                }
+            }
+            String match = teamPolicy.firstMatchingGroup(pageTeams);
+            if (match != null) {
+                List<String> matched = Collections.singletonList(match);
+                TEAM_CACHE.put(uuid, cacheKey, matched);
+                return matched;
+            }
+            teams.addAll(pageTeams);
+            String next = response.get("next");
+            page = next == null ? null : PROFILE_REQUESTS.submit(feed(next, TEAM_FIELDS, false));
+        }
+        return teams;
+    }
+
+    private String authorizedTeams() {
+        Map<String, String> customProperties = config.getCustomProperties();
+        return customProperties == null ? null : customProperties.get(BitbucketProvider.PLUGIN_SETTINGS_AUTHORIZED_TEAMS);
+    }
+
+    // Responses are parsed on the worker thread straight off the stream; the body is only read into a String when
+    // socialauth has been asked to keep raw responses.
+    private Callable<Extracted> feed(final String url, final ProfileFieldExtractor extractor, final boolean keepRawResponse) {
+        return new Callable<Extracted>() {
+            @Override
+            public Extracted call() throws Exception {
+                Response response = authenticationStrategy.executeFeed(url);
+                if (keepRawResponse) {
+                    return extractor.extract(response.getResponseBodyAsString(Constants.ENCODING));
+                }
+                try (InputStream inputStream = response.getInputStream()) {
+                    return extractor.extract(inputStream);
+                }
+            }
+        };
+    }
+
+    private Extracted await(Future<Extracted> request, long deadline, Future<?>... pending) throws Exception {
+        try {
+            return request.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            request.cancel(true);
+            cancel(pending);
+            throw new SocialAuthException(format("Timed out after %d ms while fetching the BitBucket profile", PROFILE_TIMEOUT_MILLIS), e);
+        } catch (ExecutionException e) {
+            cancel(pending);
+            throw new SocialAuthException("Error while fetching the BitBucket profile", e.getCause());
+        }
+    }
+
+    private void cancel(Future<?>... requests) {
+        for (Future<?> request : requests) {
+            if (request != null) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    private static ExecutorService profileRequestExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(PROFILE_REQUEST_THREADS, PROFILE_REQUEST_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("bitbucket-profile"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @Override
@@ -0,0 +1,56 @@
+package com.tw.go.plugin.provider.bitbucket;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class BitbucketTeamCache {
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int CAPACITY = 10000;
+
+    private final Map<String, Membership> teams = new LinkedHashMap<String, Membership>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Membership> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    public synchronized List<String> get(String userId, String authorizedTeams) {
+        if (userId == null) {
+            return null;
+        }
+        String key = key(userId, authorizedTeams);
+        Membership entry = teams.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            teams.remove(key);
+            return null;
+        }
+        return entry.teams;
+    }
+
+    // Users that cannot be identified are not cached rather than sharing one entry.
+    public synchronized void put(String userId, String authorizedTeams, List<String> matchedTeams) {
+        if (userId == null) {
+            return;
+        }
+        teams.put(key(userId, authorizedTeams), new Membership(matchedTeams, System.currentTimeMillis() + TTL_MILLIS));
+    }
+
+    private String key(String userId, String authorizedTeams) {
+        return userId.toLowerCase() + "\n" + authorizedTeams;
+    }
+
+    private static class Membership {
+        private final List<String> teams;
+        private final long expiresAt;
+
+        private Membership(List<String> teams, long expiresAt) {
+            this.teams = teams;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
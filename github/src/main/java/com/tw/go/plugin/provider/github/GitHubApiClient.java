@@ -0,0 +1,301 @@
+package com.tw.go.plugin.provider.github;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.tw.go.plugin.directory.RateLimitedException;
+import com.tw.go.plugin.directory.SyncCheckpoint;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class GitHubApiClient {
+    public static final String PUBLIC_API_URL = "https://api.github.com";
+    public static final int PAGE_SIZE = 100;
+
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>;\\s*rel=\"next\"");
+
+    private final String apiUrl;
+    private final String authorization;
+    private final TimeoutHttpConnector connector = new TimeoutHttpConnector();
+    private final Map<String, Page> pages = new ConcurrentHashMap<String, Page>();
+    private volatile long rateLimitResetAt;
+
+    public GitHubApiClient(String apiUrl, String authorization) {
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.authorization = authorization;
+    }
+
+    public static String apiUrl(GithubPluginSettings pluginSettings) {
+        return pluginSettings.isEnterprise() ? pluginSettings.getApiUrl() : PUBLIC_API_URL;
+    }
+
+    public static GitHubApiClient forSettings(GithubPluginSettings pluginSettings) {
+        String apiUrl = apiUrl(pluginSettings);
+        if (pluginSettings.containsOAuthToken()) {
+            return new GitHubApiClient(apiUrl, "token " + pluginSettings.getOauthToken());
+        }
+        if (pluginSettings.containsUsernameAndPassword()) {
+            String credentials = pluginSettings.getUsername() + ":" + pluginSettings.getPassword();
+            return new GitHubApiClient(apiUrl, "Basic " + Base64.encodeBase64String(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        throw new RuntimeException("Plugin not configured. Please provide plugin settings.");
+    }
+
+    public static GitHubApiClient forUser(GithubPluginSettings pluginSettings, String accessToken) {
+        return new GitHubApiClient(apiUrl(pluginSettings), "token " + accessToken);
+    }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    // Walks every page of a listing, sending the last seen ETag for each page so unchanged pages cost no rate limit.
+    // Returns null when the resource does not exist or is not visible with these credentials.
+    public List<String> listField(String path, String field) throws IOException {
+        String url = firstPage(path);
+        List<String> values = new ArrayList<String>();
+        while (url != null) {
+            Page page = fetch(url, field, true);
+            if (page == null) {
+                return null;
+            }
+            values.addAll(page.values);
+            url = page.next;
+        }
+        return values;
+    }
+
+    // Streams a listing into the handler a page at a time. Validators and next links are kept in the checkpoint
+    // rather than in this client, so unchanged pages are skipped without holding their contents in memory.
+    public void forEachPage(String path, String field, SyncCheckpoint checkpoint, PageHandler handler) throws IOException, RateLimitedException {
+        String url = checkpoint.getResumeUrl(path, firstPage(path));
+        while (url != null) {
+            checkpoint.setResumeUrl(path, url);
+            if (isRateLimited()) {
+                throw new RateLimitedException(rateLimitResetAt);
+            }
+
+            HttpURLConnection connection = open(url, checkpoint.getETag(url));
+            try {
+                int status = connection.getResponseCode();
+                trackRateLimit(connection);
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    url = checkpoint.skipUnchangedPage(url);
+                    continue;
+                }
+                if (status == HttpURLConnection.HTTP_FORBIDDEN && isRateLimited()) {
+                    throw new RateLimitedException(rateLimitResetAt);
+                }
+                if (status >= 300) {
+                    throw new IOException(String.format("GitHub API %s responded with %d", url, status));
+                }
+
+                String next = nextLink(connection.getHeaderField("Link"));
+                try (InputStream inputStream = connection.getInputStream()) {
+                    handler.handle(readField(inputStream, field));
+                }
+                checkpoint.recordPage(url, connection.getHeaderField("ETag"), next);
+                url = next;
+            } finally {
+                drainErrorStream(connection);
+            }
+        }
+        checkpoint.setResumeUrl(path, null);
+    }
+
+    // Not cached: one off lookups such as user searches have a different URL every time and would pile up in pages.
+    public List<String> getField(String path, String field) throws IOException {
+        Page page = fetch(apiUrl + path, field, false);
+        return page == null ? null : page.values;
+    }
+
+    // The string valued top level fields of a single resource, or null when it does not exist.
+    public Map<String, String> getObject(String path) throws IOException {
+        String url = apiUrl + path;
+        if (isRateLimited()) {
+            throw new IOException(String.format("GitHub rate limit exhausted until %tT", rateLimitResetAt));
+        }
+        HttpURLConnection connection = open(url, null);
+        try {
+            int status = connection.getResponseCode();
+            trackRateLimit(connection);
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            if (status >= 300) {
+                throw new IOException(String.format("GitHub API %s responded with %d", url, status));
+            }
+            Map<String, String> fields = new HashMap<String, String>();
+            try (InputStream inputStream = connection.getInputStream()) {
+                JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (reader.peek() == JsonToken.STRING) {
+                        fields.put(name, reader.nextString());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            return fields;
+        } finally {
+            drainErrorStream(connection);
+        }
+    }
+
+    public boolean isRateLimited() {
+        return System.currentTimeMillis() < rateLimitResetAt;
+    }
+
+    private String firstPage(String path) {
+        return apiUrl + path + (path.contains("?") ? "&" : "?") + "per_page=" + PAGE_SIZE;
+    }
+
+    private HttpURLConnection open(String url, String etag) throws IOException {
+        HttpURLConnection connection = connector.connect(new URL(url));
+        connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
+        connection.setRequestProperty("Authorization", authorization);
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        return connection;
+    }
+
+    private Page fetch(String url, String field, boolean cache) throws IOException {
+        if (isRateLimited()) {
+            throw new IOException(String.format("GitHub rate limit exhausted until %tT", rateLimitResetAt));
+        }
+
+        Page cached = cache ? pages.get(url) : null;
+        HttpURLConnection connection = open(url, cached == null ? null : cached.etag);
+
+        try {
+            int status = connection.getResponseCode();
+            trackRateLimit(connection);
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                return cached;
+            }
+            if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_NO_CONTENT) {
+                pages.remove(url);
+                return null;
+            }
+            if (status >= 300) {
+                throw new IOException(String.format("GitHub API %s responded with %d", url, status));
+            }
+
+            Page page;
+            try (InputStream inputStream = connection.getInputStream()) {
+                page = new Page(connection.getHeaderField("ETag"), nextLink(connection.getHeaderField("Link")), readField(inputStream, field));
+            }
+            if (cache) {
+                pages.put(url, page);
+            }
+            return page;
+        } catch (FileNotFoundException e) {
+            pages.remove(url);
+            return null;
+        } finally {
+            drainErrorStream(connection);
+        }
+    }
+
+    private void trackRateLimit(HttpURLConnection connection) {
+        String remaining = connection.getHeaderField("X-RateLimit-Remaining");
+        String reset = connection.getHeaderField("X-RateLimit-Reset");
+        if ("0".equals(remaining) && reset != null) {
+            try {
+                rateLimitResetAt = TimeUnit.SECONDS.toMillis(Long.parseLong(reset));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
+
+    private List<String> readField(InputStream inputStream, String field) throws IOException {
+        List<String> values = new ArrayList<String>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            readObject(reader, field, values);
+            return values;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readObject(reader, field, values);
+        }
+        reader.endArray();
+        return values;
+    }
+
+    private void readObject(JsonReader reader, String field, List<String> values) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(field) && reader.peek() == JsonToken.STRING) {
+                values.add(reader.nextString());
+            } else if (name.equals("items") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readObject(reader, field, values);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private String nextLink(String linkHeader) {
+        if (linkHeader == null) {
+            return null;
+        }
+        Matcher matcher = NEXT_LINK.matcher(linkHeader);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private void drainErrorStream(HttpURLConnection connection) {
+        InputStream errorStream = connection.getErrorStream();
+        if (errorStream != null) {
+            try {
+                byte[] buffer = new byte[1024];
+                while (errorStream.read(buffer) != -1) {
+                    // consume so the connection can go back to the keep-alive pool
+                }
+                errorStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public interface PageHandler {
+        void handle(List<String> values);
+    }
+
+    private static class Page {
+        private final String etag;
+        private final String next;
+        private final List<String> values;
+
+        private Page(String etag, String next, List<String> values) {
+            this.etag = etag;
+            this.next = next;
+            this.values = Collections.unmodifiableList(values);
+        }
+    }
+}
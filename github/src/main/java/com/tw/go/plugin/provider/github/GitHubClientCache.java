@@ -0,0 +1,104 @@
+package com.tw.go.plugin.provider.github;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.cache.PluginSettingsCache;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class GitHubClientCache {
+    private static final Logger LOGGER = Logger.getLoggerFor(GitHubClientCache.class);
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    private final HttpConnector connector;
+    private Client client;
+
+    public GitHubClientCache() {
+        this(new TimeoutHttpConnector());
+    }
+
+    public GitHubClientCache(HttpConnector connector) {
+        this.connector = connector;
+    }
+
+    public synchronized GitHub get(GithubPluginSettings pluginSettings) throws IOException {
+        String key = key(pluginSettings);
+        if (client == null || !client.key.equals(key)) {
+            client = connect(key, pluginSettings);
+        } else if (client.consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+            LOGGER.info(String.format("Recreating GitHub client after %d consecutive failures", client.consecutiveFailures));
+            client = connect(key, pluginSettings);
+        }
+        return client.github;
+    }
+
+    // The REST client for the same connection settings, so its ETags and rate limit state outlive a single call and it
+    // is replaced together with the GitHub client after repeated failures.
+    public synchronized GitHubApiClient apiClient(GithubPluginSettings pluginSettings) throws IOException {
+        get(pluginSettings);
+        if (client.apiClient == null) {
+            client.apiClient = GitHubApiClient.forSettings(pluginSettings);
+        }
+        return client.apiClient;
+    }
+
+    public synchronized void recordSuccess(GithubPluginSettings pluginSettings) {
+        if (client != null && client.key.equals(key(pluginSettings))) {
+            client.consecutiveFailures = 0;
+        }
+    }
+
+    public synchronized void recordFailure(GithubPluginSettings pluginSettings) {
+        if (client != null && client.key.equals(key(pluginSettings))) {
+            client.consecutiveFailures++;
+        }
+    }
+
+    public synchronized boolean isHealthy() {
+        return client == null || client.consecutiveFailures < MAX_CONSECUTIVE_FAILURES;
+    }
+
+    private Client connect(String key, GithubPluginSettings pluginSettings) throws IOException {
+        GitHubBuilder builder = new GitHubBuilder().withConnector(connector);
+        // Connect to either enterprise github server or public github
+        if (pluginSettings.isEnterprise()) {
+            builder.withEndpoint(pluginSettings.getApiUrl());
+        }
+
+        if (pluginSettings.containsUsernameAndPassword()) {
+            LOGGER.debug(String.format("Create GitHub connection to %s GitHub using username and password", pluginSettings.isEnterprise() ? "enterprise" : "public"));
+            builder.withPassword(pluginSettings.getUsername(), pluginSettings.getPassword());
+        } else if (pluginSettings.containsOAuthToken()) {
+            LOGGER.debug(String.format("Create GitHub connection to %s GitHub with token", pluginSettings.isEnterprise() ? "enterprise" : "public"));
+            builder.withOAuthToken(pluginSettings.getOauthToken());
+        } else {
+            throw new RuntimeException("Plugin not configured. Please provide plugin settings.");
+        }
+        return new Client(key, builder.build());
+    }
+
+    private String key(GithubPluginSettings pluginSettings) {
+        Map<String, String> connectionSettings = new HashMap<String, String>();
+        connectionSettings.put("api_url", pluginSettings.isEnterprise() ? pluginSettings.getApiUrl() : null);
+        connectionSettings.put("username", pluginSettings.getUsername());
+        connectionSettings.put("password", pluginSettings.getPassword());
+        connectionSettings.put("oauth_token", pluginSettings.getOauthToken());
+        return PluginSettingsCache.fingerprint(connectionSettings);
+    }
+
+    private static class Client {
+        private final String key;
+        private final GitHub github;
+        private GitHubApiClient apiClient;
+        private int consecutiveFailures;
+
+        private Client(String key, GitHub github) {
+            this.key = key;
+            this.github = github;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.tw.go.plugin.provider.github;
+
+import com.tw.go.plugin.User;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class GitHubProfileCache {
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int CAPACITY = 1000;
+
+    private final Map<String, Profile> profiles = new LinkedHashMap<String, Profile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Profile> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    public User get(GitHubApiClient apiClient, String login) throws IOException {
+        String key = apiClient.getApiUrl() + "/" + login.toLowerCase();
+        synchronized (profiles) {
+            Profile cached = profiles.get(key);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                return cached.user;
+            }
+        }
+
+        Map<String, String> fields = apiClient.getObject("/users/" + login);
+        User user = fields == null ? new User(login, null, null) : new User(login, fields.get("name"), fields.get("email"));
+        synchronized (profiles) {
+            profiles.put(key, new Profile(user, System.currentTimeMillis() + TTL_MILLIS));
+        }
+        return user;
+    }
+
+    private static class Profile {
+        private final User user;
+        private final long expiresAt;
+
+        private Profile(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
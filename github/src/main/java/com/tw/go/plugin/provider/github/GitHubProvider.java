@@ -2,29 +2,57 @@ package com.tw.go.plugin.provider.github;
 
 import com.thoughtworks.go.plugin.api.logging.Logger;
 import com.tw.go.plugin.User;
+import com.tw.go.plugin.directory.DirectorySource;
+import com.tw.go.plugin.directory.RateLimitedException;
+import com.tw.go.plugin.directory.SyncCheckpoint;
 import com.tw.go.plugin.provider.Provider;
+import com.tw.go.plugin.util.DaemonThreadFactory;
 import com.tw.go.plugin.util.Util;
 import org.brickred.socialauth.Permission;
 import org.brickred.socialauth.Profile;
 import org.kohsuke.github.GHOrganization;
 import org.kohsuke.github.GHUser;
 import org.kohsuke.github.GitHub;
-import org.kohsuke.github.PagedSearchIterable;
 
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.tw.go.plugin.OAuthLoginPlugin.*;
 
-public class GitHubProvider implements Provider<GithubPluginSettings> {
-    private static final String IMAGE = Util.pluginImage();
+public class GitHubProvider implements Provider<GithubPluginSettings>, DirectorySource<GithubPluginSettings> {
     private static final String PLUGIN_ID = Util.pluginId();
 
+    public static final String PLUGIN_SETTINGS_CACHE_ORGANIZATION_MEMBERSHIP = "cache_organization_membership";
+    public static final String PLUGIN_SETTINGS_AUTHORIZED_TEAMS = "authorized_teams";
+    private static final int ORGANIZATION_CHECK_THREADS = 8;
+    private static final int PROFILE_LOOKUP_THREADS = 10;
+    private static final int QUEUED_LOOKUPS = 100;
+    private static final long ORGANIZATION_CHECK_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    private static final long PROFILE_LOOKUP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(3);
+
     private static Logger LOGGER = Logger.getLoggerFor(GitHubProvider.class);
 
+    private final GitHubClientCache clients = new GitHubClientCache();
+    private final OrganizationMembershipSnapshot membershipSnapshot = new OrganizationMembershipSnapshot();
+    private final TeamMembershipSnapshot teamSnapshot = new TeamMembershipSnapshot();
+    private final ExecutorService organizationChecks = daemonExecutor("github-org-check", ORGANIZATION_CHECK_THREADS);
+    private final ExecutorService profileLookups = daemonExecutor("github-profile-lookup", PROFILE_LOOKUP_THREADS);
+    private final GitHubProfileCache profiles = new GitHubProfileCache();
+
     @Override
     public String getPluginId() {
         return PLUGIN_ID;
@@ -35,11 +63,6 @@ public class GitHubProvider implements Provider<GithubPluginSettings> {
         return "GitHub";
     }
 
-    @Override
-    public String getImageURL() {
-        return IMAGE;
-    }
-
     @Override
     public String getProviderName() {
         return "github";
@@ -58,34 +81,98 @@ public class GitHubProvider implements Provider<GithubPluginSettings> {
         return new User(displayName, fullName, emailId);
     }
 
+    // One page of search results sized to the result limit, then the names and emails the search API leaves out,
+    // looked up in parallel and cached per login. Null when the search itself fails, so it is not taken for no matches.
     @Override
     public List<User> searchUser(GithubPluginSettings pluginSettings, String searchTerm) {
         List<User> users = new ArrayList<User>();
         try {
-            GitHub github = getGitHub(pluginSettings);
-
-            PagedSearchIterable<GHUser> githubSearchResults = github.searchUsers().q(searchTerm).list();
-            int count = 0;
-            for (GHUser githubSearchResult : githubSearchResults) {
-                users.add(new User(githubSearchResult.getLogin(), githubSearchResult.getName(), githubSearchResult.getEmail()));
-                count++;
+            final GitHubApiClient apiClient = clients.apiClient(pluginSettings);
+            String path = String.format("/search/users?q=%s&per_page=%d", URLEncoder.encode(searchQuery(searchTerm), "UTF-8"), SEARCH_RESULT_LIMIT);
+            List<String> logins = apiClient.getField(path, "login");
+            clients.recordSuccess(pluginSettings);
+            if (logins == null) {
+                return null;
+            }
 
-                if (count == 10) {
-                    break;
+            List<Future<User>> lookups = new ArrayList<Future<User>>();
+            for (final String login : logins.subList(0, Math.min(logins.size(), SEARCH_RESULT_LIMIT))) {
+                lookups.add(profileLookups.submit(new Callable<User>() {
+                    @Override
+                    public User call() throws Exception {
+                        return profiles.get(apiClient, login);
+                    }
+                }));
+            }
+            long deadline = System.currentTimeMillis() + PROFILE_LOOKUP_TIMEOUT_MILLIS;
+            for (int i = 0; i < lookups.size(); i++) {
+                Future<User> lookup = lookups.get(i);
+                try {
+                    users.add(lookup.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+                } catch (ExecutionException | TimeoutException e) {
+                    lookup.cancel(true);
+                    users.add(new User(logins.get(i), null, null));
                 }
             }
         } catch (Exception e) {
+            clients.recordFailure(pluginSettings);
             LOGGER.warn("Error occurred while trying to perform user search", e);
+            return null;
         }
         return users;
     }
 
+    private String searchQuery(String searchTerm) {
+        StringBuilder query = new StringBuilder(searchTerm.trim());
+        if (!searchTerm.contains("type:")) {
+            query.append(" type:user");
+        }
+        if (!searchTerm.contains("in:")) {
+            query.append(" in:login");
+        }
+        return query.toString();
+    }
+
+    @Override
+    public boolean canSynchronize(GithubPluginSettings pluginSettings) {
+        return pluginSettings.hasOrganizations() && (pluginSettings.containsOAuthToken() || pluginSettings.containsUsernameAndPassword());
+    }
+
+    @Override
+    public void synchronize(GithubPluginSettings pluginSettings, SyncCheckpoint checkpoint, final UserSink sink) throws IOException, RateLimitedException {
+        GitHubApiClient apiClient = GitHubApiClient.forSettings(pluginSettings);
+        for (String organization : pluginSettings.getGithubOrganizations()) {
+            apiClient.forEachPage(String.format("/orgs/%s/members", organization), "login", checkpoint, new GitHubApiClient.PageHandler() {
+                @Override
+                public void handle(List<String> logins) {
+                    List<User> users = new ArrayList<User>(logins.size());
+                    for (String login : logins) {
+                        users.add(new User(login, null, null));
+                    }
+                    sink.accept(users);
+                }
+            });
+        }
+    }
+
     @Override
     public boolean authorize(GithubPluginSettings pluginSettings, User user) {
-        if(pluginSettings.hasOrganizations()){
+        // A configured team narrows its own organization to the team's members; organizations without teams are
+        // checked as a whole.
+        if (pluginSettings.hasTeams() && user.getUsername() != null && teamSnapshot.firstTeamOf(pluginSettings, user.getUsername()) != null) {
+            return true;
+        }
+        if(pluginSettings.hasOrganizationsWithoutTeams()){
+            if (pluginSettings.isCacheOrganizationMembership() && membershipSnapshot.isKnownMember(pluginSettings, user.getUsername())) {
+                return true;
+            }
+            Boolean member = isAMemberOfOrganizationUsingUserToken(pluginSettings, user);
+            if (member != null) {
+                return member;
+            }
             return isAMemberOfOrganization(pluginSettings, user);
         }
-        return true;
+        return !pluginSettings.hasTeams();
     }
 
     @Override
@@ -98,7 +185,7 @@ public class GitHubProvider implements Provider<GithubPluginSettings> {
             properties.put("api.github.com.access_token_url", pluginSettings.getAccessTokenUrl());
             properties.put("api.github.com.custom.apiURL", pluginSettings.getApiUrl());
         }
-        if (pluginSettings.hasOrganizations()) {
+        if (pluginSettings.hasOrganizations() || pluginSettings.hasTeams()) {
             properties.put("api.github.com.custom_permissions", "user:email, read:org");
         } else {
             properties.put("api.github.com.custom_permissions", "user:email");
@@ -112,70 +199,96 @@ public class GitHubProvider implements Provider<GithubPluginSettings> {
                 responseBodyMap.get(PLUGIN_SETTINGS_SERVER_BASE_URL), responseBodyMap.get(PLUGIN_SETTINGS_CONSUMER_KEY),
                 responseBodyMap.get(PLUGIN_SETTINGS_CONSUMER_SECRET), responseBodyMap.get(PLUGIN_SETTINGS_USERNAME),
                 responseBodyMap.get(PLUGIN_SETTINGS_PASSWORD), responseBodyMap.get(PLUGIN_SETTINGS_OAUTH_TOKEN),
-                responseBodyMap.get(PLUGIN_SETTINGS_ORG_NAME), responseBodyMap.containsKey(PLUGIN_SETTINGS_ENTERPRISE),
+                responseBodyMap.get(PLUGIN_SETTINGS_ORG_NAME), responseBodyMap.get(PLUGIN_SETTINGS_AUTHORIZED_TEAMS),
+                responseBodyMap.containsKey(PLUGIN_SETTINGS_ENTERPRISE),
                 responseBodyMap.get(PLUGIN_SETTINGS_AUTHORIZE_URL), responseBodyMap.get(PLUGIN_SETTINGS_ACCESS_TOKEN_URL),
-                responseBodyMap.get(PLUGIN_SETTINGS_API_URL)
+                responseBodyMap.get(PLUGIN_SETTINGS_API_URL), responseBodyMap.containsKey(PLUGIN_SETTINGS_CACHE_ORGANIZATION_MEMBERSHIP)
         );
     }
 
-    private boolean isAMemberOfOrganization(GithubPluginSettings pluginSettings, User user) {
+    // Once the queue is full a burst of logins runs its checks on the calling thread, which slows those logins down
+    // instead of letting the backlog grow without bound.
+    private static ExecutorService daemonExecutor(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUED_LOOKUPS), new DaemonThreadFactory(name), new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // A single /user/orgs call made with the user's own read:org grant. A listed organization settles it, but an
+    // organization that restricts third-party application access is left out of the list even when others are shown,
+    // so no match, an empty list or an error (null) falls back to the service credential check.
+    private Boolean isAMemberOfOrganizationUsingUserToken(GithubPluginSettings pluginSettings, User user) {
+        if (user.getAccessToken() == null) {
+            return null;
+        }
         try {
-            GitHub github = getGitHub(pluginSettings);
-            GHUser ghUser = github.getUser(user.getUsername());
+            List<String> userOrganizations = GitHubApiClient.forUser(pluginSettings, user.getAccessToken()).listField("/user/orgs", "login");
+            if (userOrganizations == null || userOrganizations.isEmpty()) {
+                return null;
+            }
+            String organization = pluginSettings.getOrganizationPolicy().firstMatchingGroup(userOrganizations);
+            if (organization == null) {
+                return null;
+            }
+            if (pluginSettings.isCacheOrganizationMembership()) {
+                membershipSnapshot.recordMember(organization, user.getUsername());
+            }
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("Error occurred while trying to list organizations of user", e);
+            return null;
+        }
+    }
+
+    private boolean isAMemberOfOrganization(final GithubPluginSettings pluginSettings, User user) {
+        List<Future<String>> checks = new ArrayList<Future<String>>();
+        try {
+            final GitHub github = clients.get(pluginSettings);
+            final GHUser ghUser = github.getUser(user.getUsername());
+            clients.recordSuccess(pluginSettings);
 
             if(ghUser == null) return false;
 
-            for(String orgName: pluginSettings.getGithubOrganizations()) {
-                GHOrganization organization = github.getOrganization(orgName);
+            CompletionService<String> completionService = new ExecutorCompletionService<String>(organizationChecks);
+            for(final String orgName: pluginSettings.getOrganizationsWithoutTeams()) {
+                checks.add(completionService.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        GHOrganization organization = github.getOrganization(orgName);
+                        return organization != null && ghUser.isMemberOf(organization) ? orgName : null;
+                    }
+                }));
+            }
 
-                if(organization != null && ghUser.isMemberOf(organization)){
-                    return true;
+            long deadline = System.currentTimeMillis() + ORGANIZATION_CHECK_TIMEOUT_MILLIS;
+            for (int i = 0; i < checks.size(); i++) {
+                Future<String> check = completionService.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (check == null) {
+                    LOGGER.warn(String.format("Timed out after %d ms while checking organization membership of %s", ORGANIZATION_CHECK_TIMEOUT_MILLIS, user.getUsername()));
+                    break;
+                }
+                try {
+                    String orgName = check.get();
+                    if (orgName != null) {
+                        if (pluginSettings.isCacheOrganizationMembership()) {
+                            membershipSnapshot.recordMember(orgName, ghUser.getLogin());
+                        }
+                        return true;
+                    }
+                } catch (ExecutionException e) {
+                    clients.recordFailure(pluginSettings);
+                    LOGGER.warn("Error occurred while trying to check if user is member of organization", e.getCause());
                 }
             }
         } catch (Exception e) {
+            clients.recordFailure(pluginSettings);
             LOGGER.warn("Error occurred while trying to check if user is member of organization", e);
+        } finally {
+            for (Future<String> check : checks) {
+                check.cancel(true);
+            }
         }
         return false;
     }
-
-    private GitHub getGitHub(GithubPluginSettings pluginSettings) throws IOException {
-        GitHub github = null;
-        // Connect to either enterprise github server or public github
-        if (pluginSettings.isEnterprise()) {
-            github = connectToEnterpriseGitHub(pluginSettings);
-        } else {
-            github = connectToPublicGitHub(pluginSettings);
-        }
-
-        if (github == null) {
-            throw new RuntimeException("Plugin not configured. Please provide plugin settings.");
-        }
-        return github;
-    }
-
-    private GitHub connectToPublicGitHub(GithubPluginSettings pluginSettings) throws IOException {
-        if (pluginSettings.containsUsernameAndPassword()) {
-            LOGGER.debug("Create GitHub connection to public GitHub using username and password");
-            return GitHub.connectUsingPassword(pluginSettings.getUsername(), pluginSettings.getPassword());
-        } else if (pluginSettings.containsOAuthToken()) {
-            LOGGER.debug("Create GitHub connection to public GitHub with token");
-            return GitHub.connectUsingOAuth(pluginSettings.getOauthToken());
-        }
-        return null;
-    }
-
-    private GitHub connectToEnterpriseGitHub(GithubPluginSettings pluginSettings) throws IOException {
-        if (pluginSettings.containsUsernameAndPassword()) {
-            LOGGER.debug("Create GitHub connection to enterprise GitHub using username and password");
-            return GitHub.connectToEnterprise(
-                    pluginSettings.getApiUrl(),
-                    pluginSettings.getUsername(),
-                    pluginSettings.getPassword()
-            );
-        } else if (pluginSettings.containsOAuthToken()) {
-            LOGGER.debug("Create GitHub connection to enterprise GitHub with token");
-            return GitHub.connectToEnterprise(pluginSettings.getApiUrl(), pluginSettings.getOauthToken());
-        }
-        return null;
-    }
 }
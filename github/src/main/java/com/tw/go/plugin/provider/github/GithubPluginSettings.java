@@ -1,15 +1,21 @@
 package com.tw.go.plugin.provider.github;
 
 import com.tw.go.plugin.PluginSettings;
-import org.apache.commons.lang.StringUtils;
+import com.tw.go.plugin.policy.AuthorizationPolicy;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.apache.commons.lang.StringUtils.isBlank;
+import static org.apache.commons.lang.StringUtils.join;
 
 public class GithubPluginSettings extends PluginSettings {
     private final List<String> githubOrganizations;
+    private final List<String> organizationsWithoutTeams;
+    private final AuthorizationPolicy organizationPolicy;
+    private final List<String> githubTeams;
     private String username;
     private String password;
     private String oauthToken;
@@ -17,6 +23,7 @@ public class GithubPluginSettings extends PluginSettings {
     private String authorizeUrl;
     private String accessTokenUrl;
     private String apiUrl;
+    private boolean cacheOrganizationMembership;
 
     public GithubPluginSettings(
             String serverBaseURL,
@@ -26,44 +33,68 @@ public class GithubPluginSettings extends PluginSettings {
             String password,
             String oauthToken,
             String githubOrg,
+            String githubTeams,
             Boolean enterprise,
             String authorizeUrl,
             String accessTokenUrl,
-            String apiUrl
+            String apiUrl,
+            boolean cacheOrganizationMembership
     ) {
         super(serverBaseURL, consumerKey, consumerSecret);
         this.username = username;
         this.password = password;
         this.oauthToken = oauthToken;
-        this.githubOrganizations = organizationsFromString(githubOrg);
+        this.githubOrganizations = new ArrayList<>(AuthorizationPolicy.forGroups(githubOrg).getGroups());
+        this.githubTeams = new ArrayList<>();
+        Set<String> teamOrganizations = new HashSet<>();
+        for (String team : AuthorizationPolicy.forGroups(githubTeams).getGroups()) {
+            int slash = team.indexOf('/');
+            if (slash > 0 && slash < team.length() - 1) {
+                this.githubTeams.add(team);
+                teamOrganizations.add(team.substring(0, slash));
+            }
+        }
+        // Teams narrow their own organization only; the other organizations still let in all of their members.
+        this.organizationsWithoutTeams = new ArrayList<>();
+        for (String organization : this.githubOrganizations) {
+            if (!teamOrganizations.contains(organization)) {
+                this.organizationsWithoutTeams.add(organization);
+            }
+        }
+        this.organizationPolicy = AuthorizationPolicy.forGroups(join(organizationsWithoutTeams, ","));
         this.enterprise = enterprise;
         this.authorizeUrl = authorizeUrl;
         this.accessTokenUrl = accessTokenUrl;
         this.apiUrl = apiUrl;
+        this.cacheOrganizationMembership = cacheOrganizationMembership;
     }
 
-    private List<String> organizationsFromString(String orgs) {
-        ArrayList<String> organizations = new ArrayList<>();
+    public boolean hasOrganizations() {
+        return !this.githubOrganizations.isEmpty();
+    }
 
-        if (StringUtils.isEmpty(orgs)) {
-            return organizations;
-        }
+    public List<String> getGithubOrganizations() {
+        return githubOrganizations;
+    }
 
-        for (String org : orgs.split(",")) {
-            if (!StringUtils.isEmpty(org.trim())) {
-                organizations.add(org);
-            }
-        }
+    public boolean hasOrganizationsWithoutTeams() {
+        return !this.organizationsWithoutTeams.isEmpty();
+    }
 
-        return organizations;
+    public List<String> getOrganizationsWithoutTeams() {
+        return organizationsWithoutTeams;
     }
 
-    public boolean hasOrganizations() {
-        return !this.githubOrganizations.isEmpty();
+    public boolean hasTeams() {
+        return !this.githubTeams.isEmpty();
     }
 
-    public List<String> getGithubOrganizations() {
-        return githubOrganizations;
+    public List<String> getGithubTeams() {
+        return githubTeams;
+    }
+
+    public AuthorizationPolicy getOrganizationPolicy() {
+        return organizationPolicy;
     }
 
     public String getUsername() {
@@ -113,4 +144,8 @@ public class GithubPluginSettings extends PluginSettings {
     public String getApiUrl() {
         return apiUrl;
     }
+
+    public boolean isCacheOrganizationMembership() {
+        return cacheOrganizationMembership;
+    }
 }
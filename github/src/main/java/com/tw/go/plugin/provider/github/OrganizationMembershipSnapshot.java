@@ -0,0 +1,121 @@
+package com.tw.go.plugin.provider.github;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.util.DaemonThreadFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class OrganizationMembershipSnapshot {
+    private static final Logger LOGGER = Logger.getLoggerFor(OrganizationMembershipSnapshot.class);
+    private static final long REFRESH_INTERVAL_MINUTES = 10;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("github-org-members"));
+
+    private volatile GithubPluginSettings pluginSettings;
+    private volatile GitHubApiClient client;
+    private volatile Map<String, Set<String>> members = Collections.emptyMap();
+    private boolean scheduled;
+
+    public boolean isKnownMember(GithubPluginSettings pluginSettings, String login) {
+        if (!pluginSettings.containsOAuthToken() && !pluginSettings.containsUsernameAndPassword()) {
+            return false;
+        }
+        track(pluginSettings);
+        String normalizedLogin = login.toLowerCase();
+        for (Set<String> organizationMembers : members.values()) {
+            if (organizationMembers.contains(normalizedLogin)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void recordMember(String organization, String login) {
+        Map<String, Set<String>> current = members;
+        Set<String> organizationMembers = current.get(organization);
+        if (organizationMembers == null || organizationMembers.contains(login.toLowerCase())) {
+            return;
+        }
+        Set<String> updatedMembers = new HashSet<String>(organizationMembers);
+        updatedMembers.add(login.toLowerCase());
+        Map<String, Set<String>> updated = new HashMap<String, Set<String>>(current);
+        updated.put(organization, Collections.unmodifiableSet(updatedMembers));
+        members = Collections.unmodifiableMap(updated);
+    }
+
+    private synchronized void track(GithubPluginSettings latestSettings) {
+        GithubPluginSettings current = pluginSettings;
+        if (current == latestSettings) {
+            return;
+        }
+        if (current != null && current.getFingerprint() != null && current.getFingerprint().equals(latestSettings.getFingerprint())) {
+            return;
+        }
+
+        pluginSettings = latestSettings;
+        client = GitHubApiClient.forSettings(latestSettings);
+        members = Collections.emptyMap();
+        if (!scheduled) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, 0, REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+            scheduled = true;
+        } else {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            });
+        }
+    }
+
+    void refresh() {
+        GithubPluginSettings settings = pluginSettings;
+        GitHubApiClient apiClient = client;
+        if (settings == null || apiClient.isRateLimited()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, Set<String>> refreshed = new HashMap<String, Set<String>>();
+        int count = 0;
+        for (String organization : settings.getOrganizationsWithoutTeams()) {
+            try {
+                List<String> logins = apiClient.listField(String.format("/orgs/%s/members", organization.trim()), "login");
+                if (logins == null) {
+                    LOGGER.warn(String.format("Could not list members of GitHub organization %s", organization));
+                    continue;
+                }
+                Set<String> organizationMembers = new HashSet<String>(logins.size() * 2);
+                for (String login : logins) {
+                    organizationMembers.add(login.toLowerCase());
+                }
+                refreshed.put(organization, Collections.unmodifiableSet(organizationMembers));
+                count += organizationMembers.size();
+            } catch (Exception e) {
+                LOGGER.warn(String.format("Error occurred while refreshing members of GitHub organization %s", organization), e);
+                Set<String> previous = members.get(organization);
+                if (previous != null) {
+                    refreshed.put(organization, previous);
+                }
+            }
+        }
+
+        if (settings == pluginSettings) {
+            members = Collections.unmodifiableMap(refreshed);
+            LOGGER.debug(String.format("Refreshed %d GitHub organization members in %d ms", count, System.currentTimeMillis() - start));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.tw.go.plugin.provider.github;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.util.DaemonThreadFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Member logins of the authorized teams, keyed by "org/team". A login that arrives before the first load attempt waits
+// for it; afterwards the sets are refreshed in the background and unchanged member pages are answered with 304 by the
+// client's conditional requests. Logins the snapshot does not list are checked against the team memberships API, so
+// members added since the last refresh, or while the snapshot could not be loaded, are let in.
+public class TeamMembershipSnapshot {
+    private static final Logger LOGGER = Logger.getLoggerFor(TeamMembershipSnapshot.class);
+    private static final long REFRESH_INTERVAL_MINUTES = 10;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("github-team-members"));
+    private final Object refreshLock = new Object();
+
+    private volatile GithubPluginSettings pluginSettings;
+    private volatile GitHubApiClient client;
+    private volatile Map<String, Set<String>> members = Collections.emptyMap();
+    private volatile boolean loaded;
+    private volatile boolean attempted;
+    private boolean scheduled;
+
+    public String firstTeamOf(GithubPluginSettings pluginSettings, String login) {
+        if (!pluginSettings.containsOAuthToken() && !pluginSettings.containsUsernameAndPassword()) {
+            return null;
+        }
+        track(pluginSettings);
+        if (!attempted) {
+            awaitInitialLoad();
+        }
+        String normalizedLogin = login.toLowerCase();
+        for (Map.Entry<String, Set<String>> team : members.entrySet()) {
+            if (team.getValue().contains(normalizedLogin)) {
+                return team.getKey();
+            }
+        }
+        for (String team : pluginSettings.getGithubTeams()) {
+            if (isLiveMember(team, login)) {
+                return team;
+            }
+        }
+        return null;
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    private synchronized void track(GithubPluginSettings latestSettings) {
+        GithubPluginSettings current = pluginSettings;
+        if (current == latestSettings) {
+            return;
+        }
+        if (current != null && current.getFingerprint() != null && current.getFingerprint().equals(latestSettings.getFingerprint())) {
+            return;
+        }
+
+        pluginSettings = latestSettings;
+        client = GitHubApiClient.forSettings(latestSettings);
+        members = Collections.emptyMap();
+        loaded = false;
+        attempted = false;
+        if (!scheduled) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, REFRESH_INTERVAL_MINUTES, REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+            scheduled = true;
+        }
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                awaitInitialLoad();
+            }
+        });
+    }
+
+    private void awaitInitialLoad() {
+        synchronized (refreshLock) {
+            if (!attempted) {
+                refresh();
+            }
+        }
+    }
+
+    void refresh() {
+        synchronized (refreshLock) {
+            GithubPluginSettings settings = pluginSettings;
+            GitHubApiClient apiClient = client;
+            if (settings == null || apiClient.isRateLimited()) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            Map<String, Set<String>> refreshed = new HashMap<String, Set<String>>();
+            int count = 0;
+            boolean complete = true;
+            for (String team : settings.getGithubTeams()) {
+                int slash = team.indexOf('/');
+                try {
+                    List<String> logins = apiClient.listField(String.format("/orgs/%s/teams/%s/members", team.substring(0, slash), team.substring(slash + 1)), "login");
+                    if (logins == null) {
+                        LOGGER.warn(String.format("Could not list members of GitHub team %s", team));
+                        complete = false;
+                        continue;
+                    }
+                    Set<String> teamMembers = new HashSet<String>(logins.size() * 2);
+                    for (String login : logins) {
+                        teamMembers.add(login.toLowerCase());
+                    }
+                    refreshed.put(team, Collections.unmodifiableSet(teamMembers));
+                    count += teamMembers.size();
+                } catch (Exception e) {
+                    LOGGER.warn(String.format("Error occurred while refreshing members of GitHub team %s", team), e);
+                    complete = false;
+                    Set<String> previous = members.get(team);
+                    if (previous != null) {
+                        refreshed.put(team, previous);
+                    }
+                }
+            }
+
+            if (settings == pluginSettings) {
+                members = Collections.unmodifiableMap(refreshed);
+                loaded = loaded || complete;
+                attempted = true;
+                LOGGER.debug(String.format("Refreshed %d GitHub team members in %d ms", count, System.currentTimeMillis() - start));
+            }
+        }
+    }
+
+    private boolean isLiveMember(String team, String login) {
+        int slash = team.indexOf('/');
+        try {
+            Map<String, String> membership = client.getObject(String.format("/orgs/%s/teams/%s/memberships/%s",
+                    team.substring(0, slash), team.substring(slash + 1), login));
+            return membership != null && "active".equals(membership.get("state"));
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Error occurred while checking membership of GitHub team %s", team), e);
+            return false;
+        }
+    }
+}
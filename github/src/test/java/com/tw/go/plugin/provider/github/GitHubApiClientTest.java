@@ -0,0 +1,128 @@
+package com.tw.go.plugin.provider.github;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.tw.go.plugin.directory.RateLimitedException;
+import com.tw.go.plugin.directory.SyncCheckpoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class GitHubApiClientTest {
+    private HttpServer server;
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicBoolean exhaustRateLimit = new AtomicBoolean();
+
+    @Before
+    public void startStubGitHub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/orgs/acme/members", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                boolean secondPage = exchange.getRequestURI().getQuery().contains("page=2");
+                String etag = secondPage ? "\"page-2\"" : "\"page-1\"";
+                if (!secondPage) {
+                    exchange.getResponseHeaders().add("Link", String.format("<%s/orgs/acme/members?per_page=100&page=2>; rel=\"next\"", apiUrl()));
+                }
+                if (exhaustRateLimit.get()) {
+                    exchange.getResponseHeaders().add("X-RateLimit-Remaining", "0");
+                    exchange.getResponseHeaders().add("X-RateLimit-Reset", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600));
+                }
+                exchange.getResponseHeaders().add("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                fullResponses.incrementAndGet();
+                respond(exchange, secondPage ? "[{\"login\":\"carol\"}]" : "[{\"login\":\"alice\"},{\"login\":\"bob\"}]");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopStubGitHub() throws Exception {
+        server.stop(0);
+    }
+
+    @Test
+    public void skipsUnchangedPagesOnTheNextWalk() throws Exception {
+        SyncCheckpoint checkpoint = new SyncCheckpoint();
+
+        assertEquals(Arrays.asList("alice", "bob", "carol"), walk(new GitHubApiClient(apiUrl(), "token secret"), checkpoint));
+        assertEquals(2, fullResponses.get());
+
+        assertEquals(new ArrayList<String>(), walk(new GitHubApiClient(apiUrl(), "token secret"), checkpoint));
+        assertEquals(2, fullResponses.get());
+    }
+
+    @Test
+    public void resumesWhereTheRateLimitStoppedTheWalk() throws Exception {
+        SyncCheckpoint checkpoint = new SyncCheckpoint();
+        final List<String> logins = new ArrayList<String>();
+        exhaustRateLimit.set(true);
+        try {
+            new GitHubApiClient(apiUrl(), "token secret").forEachPage("/orgs/acme/members", "login", checkpoint, collectInto(logins));
+            fail("expected the walk to stop at the rate limit");
+        } catch (RateLimitedException expected) {
+            assertEquals(Arrays.asList("alice", "bob"), logins);
+        }
+
+        exhaustRateLimit.set(false);
+        assertEquals(Arrays.asList("carol"), walk(new GitHubApiClient(apiUrl(), "token secret"), checkpoint));
+    }
+
+    @Test
+    public void doesNotKeepOneOffLookupsAround() throws Exception {
+        GitHubApiClient client = new GitHubApiClient(apiUrl(), "token secret");
+
+        assertEquals(Arrays.asList("alice", "bob"), client.getField("/orgs/acme/members?per_page=100", "login"));
+        assertEquals(Arrays.asList("alice", "bob"), client.getField("/orgs/acme/members?per_page=100", "login"));
+        assertEquals(2, fullResponses.get());
+    }
+
+    private List<String> walk(GitHubApiClient client, SyncCheckpoint checkpoint) throws Exception {
+        List<String> logins = new ArrayList<String>();
+        client.forEachPage("/orgs/acme/members", "login", checkpoint, collectInto(logins));
+        return logins;
+    }
+
+    private GitHubApiClient.PageHandler collectInto(final List<String> logins) {
+        return new GitHubApiClient.PageHandler() {
+            @Override
+            public void handle(List<String> values) {
+                logins.addAll(values);
+            }
+        };
+    }
+
+    private String apiUrl() {
+        return String.format("http://127.0.0.1:%d", server.getAddress().getPort());
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+        exchange.close();
+    }
+}
@@ -0,0 +1,320 @@
+package com.tw.go.plugin.provider.github;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.tw.go.plugin.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GitHubProviderTest {
+    private static final long LATENCY_MILLIS = 300;
+
+    private HttpServer server;
+    private volatile String lastSearchQuery;
+    private final AtomicInteger membershipChecks = new AtomicInteger();
+    private final AtomicInteger membershipChecksInFlight = new AtomicInteger();
+    private final AtomicInteger maxMembershipChecksInFlight = new AtomicInteger();
+    private final AtomicInteger profileReads = new AtomicInteger();
+    private final AtomicInteger profileReadsInFlight = new AtomicInteger();
+    private final AtomicInteger maxProfileReadsInFlight = new AtomicInteger();
+    private final AtomicInteger teamPageReads = new AtomicInteger();
+    private final AtomicInteger teamPagesNotModified = new AtomicInteger();
+    private final AtomicInteger teamMembershipChecks = new AtomicInteger();
+    private volatile boolean teamListingFails;
+
+    @Before
+    public void startStubGitHub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (path.equals("/user")) {
+                    respond(exchange, 200, "{\"login\":\"service-account\"}");
+                } else if (path.equals("/user/orgs")) {
+                    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                    if (authorization.equals("token in-member-org")) {
+                        respond(exchange, 200, "[{\"login\":\"Member-Org\"}]");
+                    } else if (authorization.equals("token in-other-org")) {
+                        respond(exchange, 200, "[{\"login\":\"other-org-3\"}]");
+                    } else {
+                        respond(exchange, 200, "[]");
+                    }
+                } else if (path.equals("/search/users")) {
+                    lastSearchQuery = exchange.getRequestURI().getQuery();
+                    StringBuilder items = new StringBuilder();
+                    for (int i = 0; i < 10; i++) {
+                        items.append(i == 0 ? "" : ",").append(String.format("{\"login\":\"user-%d\",\"id\":%d}", i, i));
+                    }
+                    respond(exchange, 200, String.format("{\"total_count\":250,\"items\":[%s]}", items));
+                } else if (path.startsWith("/users/")) {
+                    String login = path.substring("/users/".length());
+                    profileReads.incrementAndGet();
+                    int inFlight = profileReadsInFlight.incrementAndGet();
+                    while (inFlight > maxProfileReadsInFlight.get()) {
+                        maxProfileReadsInFlight.compareAndSet(maxProfileReadsInFlight.get(), inFlight);
+                    }
+                    sleep(LATENCY_MILLIS);
+                    profileReadsInFlight.decrementAndGet();
+                    respond(exchange, 200, String.format("{\"login\":\"%s\",\"id\":1,\"name\":\"Name of %s\"}", login, login));
+                } else if (path.equals("/orgs/acme/teams/developers/members")) {
+                    if (teamListingFails) {
+                        respond(exchange, 500, null);
+                        return;
+                    }
+                    String query = exchange.getRequestURI().getQuery();
+                    int page = query.contains("page=2") ? 2 : 1;
+                    String etag = String.format("\"developers-%d\"", page);
+                    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        teamPagesNotModified.incrementAndGet();
+                        exchange.getResponseHeaders().add("ETag", etag);
+                        respond(exchange, 304, null);
+                        return;
+                    }
+                    teamPageReads.incrementAndGet();
+                    StringBuilder members = new StringBuilder();
+                    for (int i = 0; i < 100; i++) {
+                        members.append(i == 0 ? "" : ",").append(String.format("{\"login\":\"Dev-%d\"}", (page - 1) * 100 + i));
+                    }
+                    exchange.getResponseHeaders().add("ETag", etag);
+                    if (page == 1) {
+                        exchange.getResponseHeaders().add("Link", String.format("<http://127.0.0.1:%d%s?per_page=100&page=2>; rel=\"next\"", server.getAddress().getPort(), path));
+                    }
+                    respond(exchange, 200, String.format("[%s]", members));
+                } else if (path.startsWith("/orgs/acme/teams/developers/memberships/")) {
+                    teamMembershipChecks.incrementAndGet();
+                    String login = path.substring("/orgs/acme/teams/developers/memberships/".length());
+                    if (login.matches("dev-\\d+|new-dev")) {
+                        respond(exchange, 200, "{\"state\":\"active\",\"role\":\"member\"}");
+                    } else if (login.equals("invited-dev")) {
+                        respond(exchange, 200, "{\"state\":\"pending\",\"role\":\"member\"}");
+                    } else {
+                        respond(exchange, 404, null);
+                    }
+                } else if (path.matches("/orgs/[^/]+/members/[^/]+")) {
+                    membershipChecks.incrementAndGet();
+                    int inFlight = membershipChecksInFlight.incrementAndGet();
+                    while (inFlight > maxMembershipChecksInFlight.get()) {
+                        maxMembershipChecksInFlight.compareAndSet(maxMembershipChecksInFlight.get(), inFlight);
+                    }
+                    sleep(LATENCY_MILLIS);
+                    membershipChecksInFlight.decrementAndGet();
+                    respond(exchange, path.startsWith("/orgs/member-org/") ? 204 : 404, null);
+                } else if (path.matches("/orgs/[^/]+")) {
+                    respond(exchange, 200, String.format("{\"login\":\"%s\",\"id\":2}", path.substring("/orgs/".length())));
+                } else {
+                    respond(exchange, 404, null);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopStubGitHub() throws Exception {
+        server.stop(0);
+    }
+
+    @Test
+    public void authorizesMembersOfAnyConfiguredOrganization() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+
+        assertTrue(provider.authorize(settings("other-org-1,member-org"), new User("bob", null, null)));
+        assertFalse(provider.authorize(settings("other-org-1,other-org-2"), new User("bob", null, null)));
+    }
+
+    @Test
+    public void organizationChecksRunConcurrently() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+
+        assertTrue(provider.authorize(settings("org-1,org-2,org-3,org-4,org-5,org-6,org-7,member-org"), new User("bob", null, null)));
+        assertTrue(maxMembershipChecksInFlight.get() > 1);
+    }
+
+    @Test
+    public void loginTimeStaysFlatAsOrganizationsAreAdded() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+
+        long start = System.currentTimeMillis();
+        assertTrue(provider.authorize(settings("member-org"), new User("bob", null, null)));
+        long oneOrganization = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        assertTrue(provider.authorize(settings("org-1,org-2,org-3,org-4,org-5,org-6,org-7,member-org"), new User("bob", null, null)));
+        long eightOrganizations = System.currentTimeMillis() - start;
+
+        // Checked one after another the eight organizations would take at least 8 * LATENCY_MILLIS
+        assertTrue(String.format("1 organization: %d ms, 8 organizations: %d ms", oneOrganization, eightOrganizations),
+                eightOrganizations < oneOrganization + 3 * LATENCY_MILLIS);
+    }
+
+    @Test
+    public void userOrganizationListAuthorizesListedMembersWithoutFurtherChecks() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+
+        assertTrue(provider.authorize(settings("other-org-1,member-org"), userWithToken("in-member-org")));
+        assertEquals(0, membershipChecks.get());
+    }
+
+    @Test
+    public void userOrganizationListWithoutAMatchFallsBackToTheServiceCredentialCheck() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+
+        assertFalse(provider.authorize(settings("other-org-1,other-org-2"), userWithToken("in-other-org")));
+        assertEquals(2, membershipChecks.get());
+        assertTrue(provider.authorize(settings("other-org-1,member-org"), userWithToken("in-other-org")));
+        assertEquals(4, membershipChecks.get());
+    }
+
+    @Test
+    public void emptyUserOrganizationListFallsBackToTheServiceCredentialCheck() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+
+        provider.authorize(settings("other-org-1,member-org"), userWithToken("hidden-orgs"));
+        assertEquals(2, membershipChecks.get());
+    }
+
+    private User userWithToken(String accessToken) {
+        User user = new User("bob", null, null);
+        user.setAccessToken(accessToken);
+        return user;
+    }
+
+    @Test
+    public void authorizesTeamMembersFromTheMembershipSnapshot() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+        GithubPluginSettings settings = settings("acme", "acme/developers, acme/unknown-team");
+
+        assertTrue(provider.authorize(settings, new User("dev-150", null, null)));
+        assertFalse(provider.authorize(settings, new User("bob", null, null)));
+        assertEquals(2, teamPageReads.get());
+
+        for (int i = 0; i < 200; i += 50) {
+            assertTrue(provider.authorize(settings, new User("dev-" + i, null, null)));
+        }
+        assertEquals(2, teamPageReads.get());
+        assertEquals(1, teamMembershipChecks.get());
+
+        TeamMembershipSnapshot snapshot = new TeamMembershipSnapshot();
+        snapshot.firstTeamOf(settings, "dev-1");
+        snapshot.refresh();
+        assertEquals("acme/developers", snapshot.firstTeamOf(settings, "DEV-199"));
+        assertEquals(4, teamPageReads.get());
+        assertTrue(teamPagesNotModified.get() >= 2);
+    }
+
+    @Test
+    public void checksTeamMembershipLiveForLoginsTheSnapshotMisses() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+        GithubPluginSettings settings = settings("acme", "acme/developers");
+
+        assertTrue(provider.authorize(settings, new User("new-dev", null, null)));
+        assertFalse(provider.authorize(settings, new User("invited-dev", null, null)));
+        assertEquals(2, teamMembershipChecks.get());
+        assertEquals(2, teamPageReads.get());
+    }
+
+    @Test
+    public void checksTeamMembershipLiveWhenTheInitialLoadFails() throws Exception {
+        teamListingFails = true;
+        TeamMembershipSnapshot snapshot = new TeamMembershipSnapshot();
+        GithubPluginSettings settings = settings("acme", "acme/developers");
+
+        assertEquals("acme/developers", snapshot.firstTeamOf(settings, "dev-150"));
+        assertNull(snapshot.firstTeamOf(settings, "bob"));
+        assertFalse(snapshot.isLoaded());
+        assertEquals(2, teamMembershipChecks.get());
+
+        teamListingFails = false;
+        snapshot.refresh();
+        assertTrue(snapshot.isLoaded());
+        assertEquals("acme/developers", snapshot.firstTeamOf(settings, "dev-150"));
+        assertEquals(2, teamMembershipChecks.get());
+    }
+
+    @Test
+    public void teamsOnlyNarrowTheirOwnOrganization() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+
+        assertTrue(provider.authorize(settings("acme,member-org", "acme/developers"), new User("dev-150", null, null)));
+        assertTrue(provider.authorize(settings("acme,member-org", "acme/developers"), new User("bob", null, null)));
+        assertFalse(provider.authorize(settings("acme,other-org-1", "acme/developers"), new User("bob", null, null)));
+        assertEquals(2, membershipChecks.get());
+    }
+
+    @Test
+    public void deniesTeamAuthorizationWithoutServiceCredentials() throws Exception {
+        String apiUrl = String.format("http://127.0.0.1:%d", server.getAddress().getPort());
+        GithubPluginSettings settings = new GithubPluginSettings("https://go.example.com", "client-id", "client-secret", null, null, null,
+                "acme", "acme/developers", true, apiUrl + "/login/oauth/authorize", apiUrl + "/login/oauth/access_token", apiUrl, false);
+
+        assertFalse(new GitHubProvider().authorize(settings, new User("dev-150", null, null)));
+        assertEquals(0, teamPageReads.get());
+    }
+
+    @Test
+    public void searchHydratesProfilesInParallel() throws Exception {
+        GitHubProvider provider = new GitHubProvider();
+
+        List<User> users = provider.searchUser(settings(""), "user");
+
+        assertEquals(10, users.size());
+        assertEquals("Name of user-3", users.get(3).getDisplayName());
+        assertTrue(lastSearchQuery.contains("type:user") && lastSearchQuery.contains("in:login") && lastSearchQuery.contains("per_page=10"));
+        assertEquals(10, profileReads.get());
+        assertTrue(maxProfileReadsInFlight.get() > 1);
+
+        users = provider.searchUser(settings(""), "user");
+        assertEquals(10, users.size());
+        assertEquals("Name of user-3", users.get(3).getDisplayName());
+        assertEquals(10, profileReads.get());
+    }
+
+    private GithubPluginSettings settings(String organizations) {
+        return settings(organizations, null);
+    }
+
+    private GithubPluginSettings settings(String organizations, String teams) {
+        String apiUrl = String.format("http://127.0.0.1:%d", server.getAddress().getPort());
+        return new GithubPluginSettings("https://go.example.com", "client-id", "client-secret", null, null, "token",
+                organizations, teams, true, apiUrl + "/login/oauth/authorize", apiUrl + "/login/oauth/access_token", apiUrl, false);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.tw.go.plugin.provider.gitlab;
+
+import com.tw.go.plugin.User;
+
+public class GitLabAccount extends User {
+    private final String userId;
+
+    public GitLabAccount(String username, String displayName, String emailId, String userId) {
+        super(username, displayName, emailId);
+        this.userId = userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,289 @@
+package com.tw.go.plugin.provider.gitlab;
+
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.util.DaemonThreadFactory;
+import com.tw.go.plugin.util.JSONUtils;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Member ids of the authorized groups, bulk loaded through the members API and kept as sorted int arrays so that a
+// login is a binary search instead of a membership walk. Refreshes re-request every page with If-None-Match and
+// only re-read the pages GitLab reports as changed. Users the snapshot does not list, or every user while it could not
+// be loaded, are checked against the members API directly, so members added since the last refresh are let in.
+public class GitLabGroupMembership {
+    private static final Logger LOGGER = Logger.getLoggerFor(GitLabGroupMembership.class);
+    private static final long REFRESH_INTERVAL_MINUTES = 10;
+    private static final int PAGE_SIZE = 100;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("gitlab-group-members"));
+    private final Object refreshLock = new Object();
+
+    private volatile GitLabPluginSettings pluginSettings;
+    private volatile Map<String, GroupMembers> groups = Collections.emptyMap();
+    private volatile boolean loaded;
+    private volatile boolean attempted;
+    private boolean scheduled;
+
+    public boolean isMember(GitLabPluginSettings pluginSettings, String userId) {
+        int id;
+        try {
+            id = Integer.parseInt(userId);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (!pluginSettings.containsOAuthToken()) {
+            return false;
+        }
+        track(pluginSettings);
+        if (!attempted) {
+            awaitInitialLoad();
+        }
+        for (GroupMembers members : groups.values()) {
+            if (members.contains(id)) {
+                return true;
+            }
+        }
+        for (String group : pluginSettings.getAuthorizedGroups()) {
+            if (isLiveMember(pluginSettings, group, id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        int size = 0;
+        for (GroupMembers members : groups.values()) {
+            size += members.ids.length;
+        }
+        return size;
+    }
+
+    private synchronized void track(GitLabPluginSettings latestSettings) {
+        GitLabPluginSettings current = pluginSettings;
+        if (current == latestSettings) {
+            return;
+        }
+        if (current != null && current.getFingerprint() != null && current.getFingerprint().equals(latestSettings.getFingerprint())) {
+            return;
+        }
+
+        pluginSettings = latestSettings;
+        groups = Collections.emptyMap();
+        loaded = false;
+        attempted = false;
+        if (!scheduled) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, REFRESH_INTERVAL_MINUTES, REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+            scheduled = true;
+        }
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                awaitInitialLoad();
+            }
+        });
+    }
+
+    private void awaitInitialLoad() {
+        synchronized (refreshLock) {
+            if (!attempted) {
+                refresh();
+            }
+        }
+    }
+
+    void refresh() {
+        synchronized (refreshLock) {
+            GitLabPluginSettings settings = pluginSettings;
+            if (settings == null) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            Map<String, GroupMembers> previous = groups;
+            Map<String, GroupMembers> refreshed = new HashMap<String, GroupMembers>();
+            boolean complete = true;
+            for (String group : settings.getAuthorizedGroups()) {
+                GroupMembers previousMembers = previous.get(group);
+                try {
+                    refreshed.put(group, load(settings, group, previousMembers));
+                } catch (Exception e) {
+                    LOGGER.warn(String.format("Error occurred while refreshing members of GitLab group %s", group), e);
+                    complete = false;
+                    if (previousMembers != null) {
+                        refreshed.put(group, previousMembers);
+                    }
+                }
+            }
+
+            if (settings == pluginSettings) {
+                groups = Collections.unmodifiableMap(refreshed);
+                loaded = loaded || complete;
+                attempted = true;
+                LOGGER.debug(String.format("Refreshed %d GitLab group members in %d ms", size(), System.currentTimeMillis() - start));
+            }
+        }
+    }
+
+    private boolean isLiveMember(GitLabPluginSettings settings, String group, int id) {
+        String url = HttpUrl.parse(settings.getGitlabBaseUrl() + "/api/v3/groups").newBuilder()
+                .addPathSegment(group)
+                .addPathSegment("members")
+                .addPathSegment(String.valueOf(id))
+                .build()
+                .toString();
+        Request request = new Request.Builder().url(url).header("PRIVATE-TOKEN", settings.getOauthToken()).build();
+        try {
+            Response response = GitLabProvider.client.newCall(request).execute();
+            try {
+                if (response.code() != 200 && response.code() != 404) {
+                    LOGGER.warn(String.format("GitLab responded with %d while checking membership of group %s", response.code(), group));
+                }
+                return response.code() == 200;
+            } finally {
+                response.body().close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Error occurred while checking membership of GitLab group %s", group), e);
+            return false;
+        }
+    }
+
+    private GroupMembers load(GitLabPluginSettings settings, String group, GroupMembers previous) throws IOException {
+        List<Page> pages = new ArrayList<Page>();
+        boolean changed = previous == null;
+        String url = membersPage(settings, group, 1);
+        while (url != null) {
+            Page previousPage = previous == null ? null : previous.page(url);
+            Page page = fetch(settings, url, previousPage);
+            changed |= page != previousPage;
+            pages.add(page);
+            url = page.next;
+        }
+        changed |= previous != null && previous.pages.size() != pages.size();
+        return changed ? new GroupMembers(pages) : previous;
+    }
+
+    private Page fetch(GitLabPluginSettings settings, String url, Page previous) throws IOException {
+        Request.Builder request = new Request.Builder().url(url).header("PRIVATE-TOKEN", settings.getOauthToken());
+        if (previous != null && previous.etag != null) {
+            request.header("If-None-Match", previous.etag);
+        }
+
+        Response response = GitLabProvider.client.newCall(request.build()).execute();
+        try {
+            if (response.code() == 304 && previous != null) {
+                return previous;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException(String.format("GitLab responded with %d for %s", response.code(), url));
+            }
+            List<GitLabUser> members = JSONUtils.readArray(response.body().charStream(), GitLabUser.class, PAGE_SIZE);
+            int[] ids = new int[members.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = members.get(i).getId();
+            }
+            return new Page(url, response.header("ETag"), ids, nextPage(response, url, ids.length));
+        } finally {
+            response.body().close();
+        }
+    }
+
+    private String nextPage(Response response, String url, int pageSize) {
+        HttpUrl current = HttpUrl.parse(url);
+        String nextPage = response.header("X-Next-Page");
+        if (nextPage != null) {
+            return nextPage.trim().isEmpty() ? null : current.newBuilder().setQueryParameter("page", nextPage.trim()).build().toString();
+        }
+        if (pageSize < PAGE_SIZE) {
+            return null;
+        }
+        int page = Integer.parseInt(current.queryParameter("page"));
+        return current.newBuilder().setQueryParameter("page", String.valueOf(page + 1)).build().toString();
+    }
+
+    private String membersPage(GitLabPluginSettings settings, String group, int page) {
+        return HttpUrl.parse(settings.getGitlabBaseUrl() + "/api/v3/groups").newBuilder()
+                .addPathSegment(group)
+                .addPathSegment("members")
+                .addQueryParameter("per_page", String.valueOf(PAGE_SIZE))
+                .addQueryParameter("page", String.valueOf(page))
+                .build()
+                .toString();
+    }
+
+    private static class Page {
+        private final String url;
+        private final String etag;
+        private final int[] ids;
+        private final String next;
+
+        private Page(String url, String etag, int[] ids, String next) {
+            this.url = url;
+            this.etag = etag;
+            this.ids = ids;
+            this.next = next;
+        }
+    }
+
+    private static class GroupMembers {
+        private final List<Page> pages;
+        private final int[] ids;
+
+        private GroupMembers(List<Page> pages) {
+            this.pages = pages;
+            int count = 0;
+            for (Page page : pages) {
+                count += page.ids.length;
+            }
+            int[] all = new int[count];
+            int offset = 0;
+            for (Page page : pages) {
+                System.arraycopy(page.ids, 0, all, offset, page.ids.length);
+                offset += page.ids.length;
+            }
+            Arrays.sort(all);
+            int unique = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (unique == 0 || all[unique - 1] != all[i]) {
+                    all[unique++] = all[i];
+                }
+            }
+            this.ids = Arrays.copyOf(all, unique);
+        }
+
+        private Page page(String url) {
+            for (Page page : pages) {
+                if (page.url.equals(url)) {
+                    return page;
+                }
+            }
+            return null;
+        }
+
+        private boolean contains(int id) {
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+    }
+}
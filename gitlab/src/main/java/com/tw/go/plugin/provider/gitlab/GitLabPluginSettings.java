@@ -1,22 +1,44 @@
 package com.tw.go.plugin.provider.gitlab;
 
 import com.tw.go.plugin.PluginSettings;
+import com.tw.go.plugin.policy.AuthorizationPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
 
 public class GitLabPluginSettings extends PluginSettings {
     private String oauthToken;
     private String gitlabBaseUrl;
+    private List<String> authorizedGroups;
+    private AuthorizationPolicy authorizationPolicy;
 
-    public GitLabPluginSettings(String serverBaseURL, String consumerKey, String consumerSecret, String oauthToken, String gitlabBaseUrl) {
+    public GitLabPluginSettings(String serverBaseURL, String consumerKey, String consumerSecret, String oauthToken, String gitlabBaseUrl, String authorizedGroups) {
         super(serverBaseURL, consumerKey, consumerSecret);
         this.oauthToken = oauthToken;
         this.gitlabBaseUrl = gitlabBaseUrl;
+        this.authorizationPolicy = AuthorizationPolicy.forGroups(authorizedGroups);
+        this.authorizedGroups = new ArrayList<>(authorizationPolicy.getGroups());
     }
 
     public String getOauthToken() {
         return oauthToken;
     }
 
+    public boolean containsOAuthToken() {
+        return !isBlank(oauthToken);
+    }
+
     public String getGitlabBaseUrl() {
         return gitlabBaseUrl;
     }
+
+    public List<String> getAuthorizedGroups() {
+        return authorizedGroups;
+    }
+
+    public AuthorizationPolicy getAuthorizationPolicy() {
+        return authorizationPolicy;
+    }
 }
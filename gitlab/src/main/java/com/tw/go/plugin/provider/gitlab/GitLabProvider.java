@@ -1,9 +1,13 @@
 package com.tw.go.plugin.provider.gitlab;
 
 import com.tw.go.plugin.User;
+import com.tw.go.plugin.directory.DirectorySource;
+import com.tw.go.plugin.directory.RateLimitedException;
+import com.tw.go.plugin.directory.SyncCheckpoint;
 import com.tw.go.plugin.provider.Provider;
 import com.tw.go.plugin.util.JSONUtils;
 import com.tw.go.plugin.util.Util;
+import okhttp3.ConnectionPool;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -16,14 +20,26 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import static com.tw.go.plugin.OAuthLoginPlugin.*;
+import static org.apache.commons.lang.StringUtils.isNotBlank;
 
-public class GitLabProvider implements Provider<GitLabPluginSettings> {
-    private static final String IMAGE = Util.pluginImage();
+public class GitLabProvider implements Provider<GitLabPluginSettings>, DirectorySource<GitLabPluginSettings> {
     private static final String PLUGIN_ID = Util.pluginId();
     private static final String PLUGIN_SETTINGS_GITLAB_BASE_URL = "gitlab_base_url";
-    private OkHttpClient client = new OkHttpClient();
+    public static final String PLUGIN_SETTINGS_AUTHORIZED_GROUPS = "authorized_groups";
+    private static final String USERS_LISTING = "users";
+    private static final int DIRECTORY_PAGE_SIZE = 100;
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    static final OkHttpClient client = new OkHttpClient.Builder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .writeTimeout(10, TimeUnit.SECONDS)
+            .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+            .build();
+
+    private final GitLabGroupMembership groupMembership = new GitLabGroupMembership();
 
     @Override
     public String getPluginId() {
@@ -35,11 +51,6 @@ public class GitLabProvider implements Provider<GitLabPluginSettings> {
         return "GitLab";
     }
 
-    @Override
-    public String getImageURL() {
-        return IMAGE;
-    }
-
     @Override
     public String getProviderName() {
         return "gitlab";
@@ -54,41 +65,143 @@ public class GitLabProvider implements Provider<GitLabPluginSettings> {
     public User getUser(Profile profile) {
         String fullName = profile.getFullName();
         String emailId = profile.getEmail();
-        return new User(emailId, fullName, emailId);
+        return new GitLabAccount(emailId, fullName, emailId, profile.getValidatedId());
     }
 
     @Override
     public List<User> searchUser(GitLabPluginSettings pluginSettings, String searchTerm) {
-        HttpUrl searchBaseUrl = HttpUrl.parse(fullUrl(pluginSettings, "/api/v3/users"));
-
-        HttpUrl url = new HttpUrl.Builder()
-                .scheme(searchBaseUrl.scheme())
-                .host(searchBaseUrl.host())
-                .addPathSegments(searchBaseUrl.encodedPath())
-                .addQueryParameter("private_token", pluginSettings.getOauthToken())
+        List<User> users = new ArrayList<>();
+        if (!pluginSettings.containsOAuthToken()) {
+            LOGGER.warn("Cannot search users without a GitLab private token");
+            return users;
+        }
+        String url = HttpUrl.parse(fullUrl(pluginSettings, "/api/v3/users")).newBuilder()
                 .addQueryParameter("search", searchTerm)
-                .build();
-
-        Request request = new Request.Builder().url(url.url()).build();
+                .addQueryParameter("per_page", String.valueOf(SEARCH_RESULT_LIMIT))
+                .build()
+                .toString();
+        Request request = new Request.Builder().url(url).header("PRIVATE-TOKEN", pluginSettings.getOauthToken()).build();
 
         try {
             Response response = client.newCall(request).execute();
-            List<User> users = new ArrayList<>();
-
-            for (Map<String, String> userParams : (List<Map<String, String>>) JSONUtils.fromJSON(response.body().string())) {
-                users.add(new User(userParams.get("email"), userParams.get("name"), userParams.get("email")));
+            try {
+                if (!response.isSuccessful()) {
+                    LOGGER.warn(String.format("GitLab responded with %d while searching users", response.code()));
+                    return null;
+                }
+                for (GitLabUser gitLabUser : JSONUtils.readArray(response.body().charStream(), GitLabUser.class, SEARCH_RESULT_LIMIT)) {
+                    User user = gitLabUser.toUser();
+                    if (user != null) {
+                        users.add(user);
+                    }
+                }
+            } finally {
+                response.body().close();
             }
-            return users;
-
         } catch (IOException e) {
             LOGGER.warn("Error occurred while trying to perform user search", e);
-            return new ArrayList<>();
+            return null;
+        }
+        return users;
+    }
+
+    @Override
+    public boolean canSynchronize(GitLabPluginSettings pluginSettings) {
+        return isNotBlank(pluginSettings.getGitlabBaseUrl()) && pluginSettings.containsOAuthToken();
+    }
+
+    // Pages through /users with If-None-Match, so unchanged pages are answered with 304 and only changed pages are
+    // read. Each page is streamed into the sink as it arrives.
+    @Override
+    public void synchronize(GitLabPluginSettings pluginSettings, SyncCheckpoint checkpoint, UserSink sink) throws IOException, RateLimitedException {
+        if (!pluginSettings.containsOAuthToken()) {
+            return;
         }
+        String url = checkpoint.getResumeUrl(USERS_LISTING, usersPage(pluginSettings, 1));
+        while (url != null) {
+            checkpoint.setResumeUrl(USERS_LISTING, url);
+            Request.Builder request = new Request.Builder().url(url).header("PRIVATE-TOKEN", pluginSettings.getOauthToken());
+            String etag = checkpoint.getETag(url);
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+
+            Response response = client.newCall(request.build()).execute();
+            try {
+                if (response.code() == 429) {
+                    throw new RateLimitedException(retryAt(response));
+                }
+                String next;
+                if (response.code() == 304) {
+                    next = checkpoint.skipUnchangedPage(url);
+                } else if (response.isSuccessful()) {
+                    List<GitLabUser> page = JSONUtils.readArray(response.body().charStream(), GitLabUser.class, DIRECTORY_PAGE_SIZE);
+                    List<User> users = new ArrayList<>(page.size());
+                    for (GitLabUser gitLabUser : page) {
+                        User user = gitLabUser.toUser();
+                        if (user != null) {
+                            users.add(user);
+                        }
+                    }
+                    sink.accept(users);
+                    next = nextUsersPage(pluginSettings, response, url, page.size());
+                    checkpoint.recordPage(url, response.header("ETag"), next);
+                } else {
+                    throw new IOException(String.format("GitLab responded with %d while listing users", response.code()));
+                }
+
+                url = next;
+                if (url != null && "0".equals(response.header("RateLimit-Remaining"))) {
+                    checkpoint.setResumeUrl(USERS_LISTING, url);
+                    throw new RateLimitedException(retryAt(response));
+                }
+            } finally {
+                response.body().close();
+            }
+        }
+        checkpoint.setResumeUrl(USERS_LISTING, null);
+    }
+
+    private String usersPage(GitLabPluginSettings pluginSettings, int page) {
+        return HttpUrl.parse(fullUrl(pluginSettings, "/api/v3/users")).newBuilder()
+                .addQueryParameter("per_page", String.valueOf(DIRECTORY_PAGE_SIZE))
+                .addQueryParameter("page", String.valueOf(page))
+                .build()
+                .toString();
+    }
+
+    private String nextUsersPage(GitLabPluginSettings pluginSettings, Response response, String url, int pageSize) {
+        String nextPage = response.header("X-Next-Page");
+        if (nextPage != null) {
+            return nextPage.trim().isEmpty() ? null : usersPage(pluginSettings, Integer.parseInt(nextPage.trim()));
+        }
+        if (pageSize < DIRECTORY_PAGE_SIZE) {
+            return null;
+        }
+        return usersPage(pluginSettings, Integer.parseInt(HttpUrl.parse(url).queryParameter("page")) + 1);
+    }
+
+    private long retryAt(Response response) {
+        try {
+            String retryAfter = response.header("Retry-After");
+            if (retryAfter != null) {
+                return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            }
+            String reset = response.header("RateLimit-Reset");
+            if (reset != null) {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(reset.trim()));
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        return System.currentTimeMillis() + DEFAULT_RETRY_AFTER_MILLIS;
     }
 
     @Override
     public boolean authorize(GitLabPluginSettings pluginSettings, User user) {
-        return true;
+        if (!pluginSettings.getAuthorizationPolicy().hasGroups()) {
+            return true;
+        }
+        return user instanceof GitLabAccount && groupMembership.isMember(pluginSettings, ((GitLabAccount) user).getUserId());
     }
 
     @Override
@@ -113,7 +226,8 @@ public class GitLabProvider implements Provider<GitLabPluginSettings> {
         return new GitLabPluginSettings(responseBodyMap.get(PLUGIN_SETTINGS_SERVER_BASE_URL),
                 responseBodyMap.get(PLUGIN_SETTINGS_CONSUMER_KEY),
                 responseBodyMap.get(PLUGIN_SETTINGS_CONSUMER_SECRET), responseBodyMap.get(PLUGIN_SETTINGS_OAUTH_TOKEN),
-                responseBodyMap.get(PLUGIN_SETTINGS_GITLAB_BASE_URL)
+                responseBodyMap.get(PLUGIN_SETTINGS_GITLAB_BASE_URL),
+                responseBodyMap.get(PLUGIN_SETTINGS_AUTHORIZED_GROUPS)
         );
     }
 }
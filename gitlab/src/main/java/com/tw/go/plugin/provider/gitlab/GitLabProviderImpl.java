@@ -1,5 +1,6 @@
 package com.tw.go.plugin.provider.gitlab;
 
+import com.tw.go.plugin.util.ProfileFieldExtractor;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.brickred.socialauth.*;
@@ -10,12 +11,13 @@ import org.brickred.socialauth.exception.UserDeniedPermissionException;
 import org.brickred.socialauth.oauthstrategy.OAuth2;
 import org.brickred.socialauth.oauthstrategy.OAuthStrategyBase;
 import org.brickred.socialauth.util.*;
-import org.json.JSONObject;
 
 import java.io.InputStream;
 import java.util.*;
 
 public class GitLabProviderImpl extends AbstractProvider {
+    // GitLab's /user lists these ahead of identities and the other large fields, so reading stops early.
+    static final ProfileFieldExtractor PROFILE_FIELDS = new ProfileFieldExtractor("id", "username", "name", "email");
     private final Log LOG = LogFactory.getLog(this.getClass());
 
     private final OAuthConfig config;
@@ -94,31 +96,37 @@ public class GitLabProviderImpl extends AbstractProvider {
     }
 
     private Profile getProfile() throws Exception {
-        String response;
+        Response response;
 
         String profileUrl = config.getCustomProperties().get("profile_url");
         try {
-            response = authenticationStrategy.executeFeed(profileUrl).getResponseBodyAsString(Constants.ENCODING);
+            response = authenticationStrategy.executeFeed(profileUrl);
         } catch (Exception e) {
             throw new SocialAuthException("Error while getting profile from " + profileUrl, e);
         }
         try {
-            LOG.debug("User Profile : " + response);
-            JSONObject resp = new JSONObject(response);
+            ProfileFieldExtractor.Extracted fields;
+            if (config.isSaveRawResponse()) {
+                fields = PROFILE_FIELDS.extract(response.getResponseBodyAsString(Constants.ENCODING));
+            } else {
+                try (InputStream inputStream = response.getInputStream()) {
+                    fields = PROFILE_FIELDS.extract(inputStream);
+                }
+            }
             Profile p = new Profile();
-            p.setValidatedId(resp.optString("id", null));
-            p.setFullName(resp.optString("name", null));
-            p.setEmail(resp.optString("email", null));
-            p.setDisplayName(resp.optString("login", null));
+            p.setValidatedId(fields.get("id"));
+            p.setFullName(fields.get("name"));
+            p.setEmail(fields.get("email"));
+            p.setDisplayName(fields.get("username"));
             p.setProviderId(getProviderId());
-            if (config.isSaveRawResponse()) {
-                p.setRawResponse(response);
+            if (fields.getRawResponse() != null) {
+                p.setRawResponse(fields.getRawResponse());
             }
             userProfile = p;
             return userProfile;
         } catch (Exception ex) {
             throw new ServerDataException(
-                    "Failed to parse the user profile json : " + response, ex);
+                    "Failed to parse the user profile json from " + profileUrl, ex);
         }
     }
 
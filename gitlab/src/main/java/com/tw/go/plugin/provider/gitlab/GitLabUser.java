@@ -0,0 +1,30 @@
+package com.tw.go.plugin.provider.gitlab;
+
+import com.tw.go.plugin.User;
+
+public class GitLabUser {
+    private int id;
+    private String username;
+    private String name;
+    private String email;
+
+    public int getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public User toUser() {
+        return email == null ? null : new User(email, name, email);
+    }
+}
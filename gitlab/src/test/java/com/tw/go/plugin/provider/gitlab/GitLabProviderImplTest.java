@@ -0,0 +1,47 @@
+package com.tw.go.plugin.provider.gitlab;
+
+import com.tw.go.plugin.util.ProfileFieldExtractor;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GitLabProviderImplTest {
+    @Test
+    public void readsOnlyTheStartOfTheGitLabUserResponse() throws Exception {
+        StringBuilder user = new StringBuilder("{\"id\":7,\"username\":\"jdoe\",\"email\":\"jdoe@example.com\",\"name\":\"John Doe\",\"state\":\"active\"," +
+                "\"avatar_url\":\"https://gitlab.example.com/uploads/user/avatar/7/jdoe.png\",\"web_url\":\"https://gitlab.example.com/jdoe\"," +
+                "\"created_at\":\"2016-01-04T15:44:00.000Z\",\"bio\":null,\"public_email\":\"\",\"identities\":[");
+        for (int i = 0; i < 500; i++) {
+            user.append(i == 0 ? "" : ",").append(String.format("{\"provider\":\"ldapmain\",\"extern_uid\":\"cn=jdoe,ou=team%d,dc=example,dc=com\"}", i));
+        }
+        user.append("],\"can_create_group\":true,\"can_create_project\":true,\"two_factor_enabled\":false,\"external\":false}");
+        CountingReader reader = new CountingReader(user.toString());
+
+        ProfileFieldExtractor.Extracted fields = GitLabProviderImpl.PROFILE_FIELDS.extract(reader);
+
+        assertEquals("7", fields.get("id"));
+        assertEquals("jdoe", fields.get("username"));
+        assertEquals("jdoe@example.com", fields.get("email"));
+        assertEquals("John Doe", fields.get("name"));
+        assertTrue(reader.read < user.length() / 2);
+    }
+
+    private static class CountingReader extends StringReader {
+        private int read;
+
+        private CountingReader(String value) {
+            super(value);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            read += Math.max(0, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.tw.go.plugin.provider.gitlab;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GitLabProviderTest {
+    private HttpServer server;
+    private final Set<Integer> developers = new CopyOnWriteArraySet<Integer>();
+    private final AtomicInteger memberPageReads = new AtomicInteger();
+    private final AtomicInteger liveMembershipChecks = new AtomicInteger();
+    private volatile boolean membersListingFails;
+
+    @Before
+    public void startStubGitLab() throws Exception {
+        developers.add(1);
+        developers.add(2);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (!"secret".equals(exchange.getRequestHeaders().getFirst("PRIVATE-TOKEN"))) {
+                    respond(exchange, 401, "{\"message\":\"401 Unauthorized\"}");
+                } else if (path.equals("/api/v3/groups/developers/members")) {
+                    memberPageReads.incrementAndGet();
+                    if (membersListingFails) {
+                        respond(exchange, 500, "{\"message\":\"500 Internal Server Error\"}");
+                        return;
+                    }
+                    StringBuilder members = new StringBuilder();
+                    for (Integer id : developers) {
+                        members.append(members.length() == 0 ? "" : ",").append(String.format("{\"id\":%d,\"username\":\"user-%d\"}", id, id));
+                    }
+                    exchange.getResponseHeaders().add("X-Next-Page", "");
+                    respond(exchange, 200, String.format("[%s]", members));
+                } else if (path.startsWith("/api/v3/groups/developers/members/")) {
+                    liveMembershipChecks.incrementAndGet();
+                    int id = Integer.parseInt(path.substring("/api/v3/groups/developers/members/".length()));
+                    if (developers.contains(id)) {
+                        respond(exchange, 200, String.format("{\"id\":%d,\"username\":\"user-%d\"}", id, id));
+                    } else {
+                        respond(exchange, 404, "{\"message\":\"404 Not found\"}");
+                    }
+                } else {
+                    respond(exchange, 404, "{\"message\":\"404 Not found\"}");
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopStubGitLab() {
+        server.stop(0);
+    }
+
+    @Test
+    public void authorizesMembersOfTheSnapshot() throws Exception {
+        GitLabProvider provider = new GitLabProvider();
+        GitLabPluginSettings settings = settings("secret");
+
+        assertTrue(provider.authorize(settings, user(1)));
+        assertTrue(provider.authorize(settings, user(2)));
+        assertEquals(1, memberPageReads.get());
+        assertEquals(0, liveMembershipChecks.get());
+    }
+
+    @Test
+    public void deniesUsersOutsideTheAuthorizedGroups() throws Exception {
+        GitLabProvider provider = new GitLabProvider();
+        GitLabPluginSettings settings = settings("secret");
+
+        assertFalse(provider.authorize(settings, user(3)));
+        assertFalse(provider.authorize(settings, user("not-a-number")));
+        assertEquals(1, liveMembershipChecks.get());
+    }
+
+    @Test
+    public void authorizesMembersAddedAfterTheSnapshotWasLoaded() throws Exception {
+        GitLabProvider provider = new GitLabProvider();
+        GitLabPluginSettings settings = settings("secret");
+        assertFalse(provider.authorize(settings, user(3)));
+
+        developers.add(3);
+
+        assertTrue(provider.authorize(settings, user(3)));
+        assertEquals(1, memberPageReads.get());
+    }
+
+    @Test
+    public void checksMembersLiveWhenTheInitialLoadFails() throws Exception {
+        membersListingFails = true;
+        GitLabGroupMembership membership = new GitLabGroupMembership();
+        GitLabPluginSettings settings = settings("secret");
+
+        assertTrue(membership.isMember(settings, "1"));
+        assertFalse(membership.isMember(settings, "3"));
+        assertFalse(membership.isLoaded());
+        assertEquals(2, liveMembershipChecks.get());
+
+        membersListingFails = false;
+        membership.refresh();
+        assertTrue(membership.isLoaded());
+        assertTrue(membership.isMember(settings, "1"));
+        assertEquals(2, liveMembershipChecks.get());
+    }
+
+    @Test
+    public void deniesWithoutAPrivateToken() throws Exception {
+        GitLabProvider provider = new GitLabProvider();
+
+        assertFalse(provider.authorize(settings(null), user(1)));
+        assertEquals(0, memberPageReads.get());
+        assertTrue(provider.searchUser(settings(null), "user").isEmpty());
+    }
+
+    private GitLabPluginSettings settings(String token) {
+        String baseUrl = String.format("http://127.0.0.1:%d", server.getAddress().getPort());
+        return new GitLabPluginSettings("https://go.example.com", "client-id", "client-secret", token, baseUrl, "developers");
+    }
+
+    private GitLabAccount user(int id) {
+        return user(String.valueOf(id));
+    }
+
+    private GitLabAccount user(String id) {
+        return new GitLabAccount("user-" + id, "User " + id, "user-" + id + "@example.com", id);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+        exchange.close();
+    }
+}
@@ -1,11 +1,13 @@
 package com.tw.go.plugin.provider.google;
 
 import com.tw.go.plugin.PluginSettings;
+import com.tw.go.plugin.policy.AuthorizationPolicy;
 
 public class GooglePluginSettings extends PluginSettings {
     @Deprecated
     private String usernameRegex;
     private String allowedDomains;
+    private volatile AuthorizationPolicy authorizationPolicy;
 
     public GooglePluginSettings(String serverBaseURL, String consumerKey, String consumerSecret, String usernameRegex, String allowedDomains) {
         super(serverBaseURL, consumerKey, consumerSecret);
@@ -29,10 +31,21 @@ public class GooglePluginSettings extends PluginSettings {
     @Deprecated
     public void setUsernameRegex(String usernameRegex) {
         this.usernameRegex = usernameRegex;
+        this.authorizationPolicy = null;
     }
 
     public void setAllowedDomains(String allowedDomains) {
         this.allowedDomains = allowedDomains;
+        this.authorizationPolicy = null;
+    }
+
+    public AuthorizationPolicy getAuthorizationPolicy() {
+        AuthorizationPolicy policy = authorizationPolicy;
+        if (policy == null) {
+            policy = AuthorizationPolicy.compile(allowedDomains, usernameRegex, null);
+            authorizationPolicy = policy;
+        }
+        return policy;
     }
 
     @Override
@@ -0,0 +1,16 @@
+package com.tw.go.plugin.provider.google;
+
+import org.brickred.socialauth.Profile;
+
+public class GoogleProfile extends Profile {
+
+    private String hostedDomain;
+
+    public String getHostedDomain() {
+        return hostedDomain;
+    }
+
+    public void setHostedDomain(String hostedDomain) {
+        this.hostedDomain = hostedDomain;
+    }
+}
@@ -1,6 +1,7 @@
 package com.tw.go.plugin.provider.google;
 
 import com.tw.go.plugin.User;
+import com.tw.go.plugin.policy.AuthorizationPolicy;
 import com.tw.go.plugin.provider.Provider;
 import com.tw.go.plugin.util.Util;
 import org.brickred.socialauth.Permission;
@@ -11,11 +12,9 @@ import java.util.Map;
 import java.util.Properties;
 
 import static com.tw.go.plugin.OAuthLoginPlugin.*;
-import static org.apache.commons.lang.StringUtils.isNotBlank;
 
 public class GoogleProvider implements Provider<GooglePluginSettings> {
 
-    private static final String IMAGE = Util.pluginImage();
     private static final String PLUGIN_ID = Util.pluginId();
 
     @Override
@@ -28,25 +27,23 @@ public class GoogleProvider implements Provider<GooglePluginSettings> {
         return "Google";
     }
 
-    @Override
-    public String getImageURL() {
-        return IMAGE;
-    }
-
     @Override
     public String getProviderName() {
-        return "googleplus";
+        return "google";
     }
 
     @Override
     public Permission getAuthPermission() {
-        return Permission.AUTHENTICATE_ONLY;
+        return Permission.CUSTOM;
     }
 
     @Override
     public User getUser(Profile profile) {
         String emailId = profile.getEmail();
         String fullName = profile.getFullName();
+        if (profile instanceof GoogleProfile) {
+            return new GoogleUser(emailId, fullName, emailId, ((GoogleProfile) profile).getHostedDomain());
+        }
         return new User(emailId, fullName, emailId);
     }
 
@@ -57,24 +54,16 @@ public class GoogleProvider implements Provider<GooglePluginSettings> {
 
     @Override
     public boolean authorize(GooglePluginSettings pluginSettings, User user) {
-        String username = user.getUsername();
-
-        if (isNotBlank(pluginSettings.getAllowedDomains())) {
-            String allowedDomains = pluginSettings.getAllowedDomains();
-            String[] domains = allowedDomains.split(",");
-            for (String domain : domains) {
-                if (username.endsWith("@" + domain.trim())) {
-                    return true;
-                }
+        AuthorizationPolicy policy = pluginSettings.getAuthorizationPolicy();
+
+        if (policy.hasDomains()) {
+            if (user instanceof GoogleUser && policy.allowsDomain(((GoogleUser) user).getHostedDomain())) {
+                return true;
             }
-            return false;
+            return policy.matchesDomain(user.getUsername());
         }
-        if (isNotBlank(pluginSettings.getUsernameRegex())) {
-            try {
-                return username.matches(pluginSettings.getUsernameRegex().trim());
-            } catch (Exception e) {
-                return false;
-            }
+        if (policy.hasUsernamePattern()) {
+            return policy.matchesUsername(user.getUsername());
         }
         return true;
     }
@@ -82,9 +71,14 @@ public class GoogleProvider implements Provider<GooglePluginSettings> {
     @Override
     public Properties configure(GooglePluginSettings pluginSettings) {
         Properties properties = new Properties();
-        properties.put("googleapis.com.consumer_key", pluginSettings.getConsumerKey());
-        properties.put("googleapis.com.consumer_secret", pluginSettings.getConsumerSecret());
-        properties.put("www.google.com.custom_permissions", "https://www.googleapis.com/auth/userinfo.email,https://www.googleapis.com/auth/userinfo.profile,https://www.googleapis.com/auth/plus.me");
+
+        properties.put("socialauth.google", "com.tw.go.plugin.provider.google.GoogleProviderImpl");
+        properties.put("google.consumer_key", pluginSettings.getConsumerKey());
+        properties.put("google.consumer_secret", pluginSettings.getConsumerSecret());
+
+        properties.put("google.authentication_url", "https://accounts.google.com/o/oauth2/v2/auth");
+        properties.put("google.access_token_url", "https://oauth2.googleapis.com/token");
+        properties.put("google.custom_permissions", "openid email profile");
 
         return properties;
     }
@@ -0,0 +1,224 @@
+package com.tw.go.plugin.provider.google;
+
+import com.google.gson.JsonObject;
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.util.ProfileFieldExtractor;
+import com.tw.go.plugin.util.ProfileFieldExtractor.Extracted;
+import org.brickred.socialauth.AbstractProvider;
+import org.brickred.socialauth.Contact;
+import org.brickred.socialauth.Permission;
+import org.brickred.socialauth.Profile;
+import org.brickred.socialauth.exception.AccessTokenExpireException;
+import org.brickred.socialauth.exception.SocialAuthException;
+import org.brickred.socialauth.exception.UserDeniedPermissionException;
+import org.brickred.socialauth.oauthstrategy.OAuth2;
+import org.brickred.socialauth.oauthstrategy.OAuthStrategyBase;
+import org.brickred.socialauth.util.AccessGrant;
+import org.brickred.socialauth.util.Constants;
+import org.brickred.socialauth.util.OAuthConfig;
+import org.brickred.socialauth.util.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+@SuppressWarnings("unused")
+public class GoogleProviderImpl extends AbstractProvider {
+
+    private static Logger LOGGER = Logger.getLoggerFor(GoogleProviderImpl.class);
+    private static final String USERINFO_URL = "https://www.googleapis.com/oauth2/v3/userinfo";
+    private static final IdTokenVerifier ID_TOKENS = new IdTokenVerifier(new GoogleSigningKeys(GoogleSigningKeys.CERTS_URL));
+    private static final ProfileFieldExtractor USERINFO_FIELDS = new ProfileFieldExtractor("sub", "email", "email_verified", "name", "hd");
+
+    private final HashMap<String, String> endpoints;
+    private final OAuth2 authenticationStrategy;
+    private final OAuthConfig config;
+
+    private Permission scope;
+    private AccessGrant accessGrant;
+    private GoogleProfile profile;
+
+    public GoogleProviderImpl(OAuthConfig providerConfig) throws Exception {
+        config = providerConfig;
+
+        if (config.getCustomPermissions() != null) {
+            scope = Permission.CUSTOM;
+        }
+
+        endpoints = new HashMap<>();
+        endpoints.put(Constants.OAUTH_AUTHORIZATION_URL, providerConfig.getAuthenticationUrl());
+        endpoints.put(Constants.OAUTH_ACCESS_TOKEN_URL, providerConfig.getAccessTokenUrl());
+        authenticationStrategy = new OAuth2(config, endpoints);
+        authenticationStrategy.setPermission(scope);
+        authenticationStrategy.setScope(getScope());
+    }
+
+    @Override
+    public Profile getUserProfile() throws Exception {
+        if (profile == null) {
+            profile = fromUserInfo();
+        }
+        return profile;
+    }
+
+    // The token response already carries a signed id_token with everything the plugin needs, so the profile is
+    // taken from it once its signature has been checked against Google's (cached) signing keys. When the keys cannot
+    // be fetched the userinfo endpoint is asked instead; only a token that fails verification is rejected.
+    private GoogleProfile fromIdToken(String idToken) throws Exception {
+        JsonObject claims;
+        try {
+            claims = ID_TOKENS.verify(idToken, config.get_consumerKey());
+        } catch (IOException e) {
+            LOGGER.warn("Could not retrieve Google signing keys, fetching the Google userinfo instead", e);
+            return fromUserInfo();
+        } catch (Exception e) {
+            throw new SocialAuthException("Could not verify the Google id_token", e);
+        }
+        if (!"true".equals(IdTokenVerifier.string(claims, "email_verified"))) {
+            throw new SocialAuthException("Google account email address is not verified");
+        }
+        GoogleProfile profile = newProfile(IdTokenVerifier.string(claims, "sub"));
+        profile.setEmail(IdTokenVerifier.string(claims, "email"));
+        profile.setFullName(IdTokenVerifier.string(claims, "name"));
+        profile.setHostedDomain(IdTokenVerifier.string(claims, "hd"));
+        return profile;
+    }
+
+    private GoogleProfile fromUserInfo() throws Exception {
+        LOGGER.debug("No id_token in the token response, fetching the Google userinfo");
+        Response response = authenticationStrategy.executeFeed(USERINFO_URL);
+        Extracted userInfo;
+        try (InputStream inputStream = response.getInputStream()) {
+            userInfo = USERINFO_FIELDS.extract(inputStream);
+        }
+        if (!"true".equals(userInfo.get("email_verified"))) {
+            throw new SocialAuthException("Google account email address is not verified");
+        }
+        GoogleProfile profile = newProfile(userInfo.get("sub"));
+        profile.setEmail(userInfo.get("email"));
+        profile.setFullName(userInfo.get("name"));
+        profile.setHostedDomain(userInfo.get("hd"));
+        return profile;
+    }
+
+    private GoogleProfile newProfile(String subject) {
+        GoogleProfile profile = new GoogleProfile();
+        profile.setValidatedId(subject);
+        profile.setProviderId(getProviderId());
+        return profile;
+    }
+
+    @Override
+    public String getLoginRedirectURL(String successUrl) throws Exception {
+        return authenticationStrategy.getLoginRedirectURL(successUrl);
+    }
+
+    @Override
+    public Profile verifyResponse(final Map<String, String> requestParams) throws Exception {
+        return doVerifyResponse(requestParams);
+    }
+
+    @Override
+    public void logout() {
+        profile = null;
+        accessGrant = null;
+        authenticationStrategy.logout();
+    }
+
+    @Override
+    public void setPermission(Permission permission) {
+        LOGGER.debug(format("Permission requested : %s", permission.toString()));
+        this.scope = permission;
+        authenticationStrategy.setPermission(this.scope);
+        authenticationStrategy.setScope(getScope());
+    }
+
+    @Override
+    public Response api(String url, String methodType, Map<String, String> params, Map<String, String> headerParams, String body) throws Exception {
+        LOGGER.info(format("Calling API function for url: %s", url));
+
+        try {
+            return authenticationStrategy.executeFeed(url, methodType, params, headerParams, body);
+        } catch (Exception e) {
+            throw new SocialAuthException(format("Error while making request to URL : %s", url), e);
+        }
+    }
+
+    private Profile doVerifyResponse(final Map<String, String> requestParams) throws Exception {
+        LOGGER.info("Retrieving Access Token in verify response function");
+
+        if ("access_denied".equals(requestParams.get("error"))) {
+            throw new UserDeniedPermissionException();
+        }
+
+        accessGrant = authenticationStrategy.verifyResponse(requestParams, "POST");
+
+        if (accessGrant == null) {
+            throw new SocialAuthException("Access token not found");
+        }
+        LOGGER.debug("Access grant available");
+
+        Object idToken = accessGrant.getAttribute("id_token");
+        profile = idToken != null ? fromIdToken(idToken.toString()) : fromUserInfo();
+        return profile;
+    }
+
+    @Override
+    public AccessGrant getAccessGrant() {
+        return accessGrant;
+    }
+
+    @Override
+    public String getProviderId() {
+        return config.getId();
+    }
+
+    @Override
+    public void setAccessGrant(final AccessGrant accessGrant) throws AccessTokenExpireException, SocialAuthException {
+        this.accessGrant = accessGrant;
+        authenticationStrategy.setAccessGrant(accessGrant);
+    }
+
+    private String getScope() {
+        if (Permission.CUSTOM.equals(scope) && config.getCustomPermissions() != null) {
+            return config.getCustomPermissions();
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    protected OAuthStrategyBase getOauthStrategy() {
+        return authenticationStrategy;
+    }
+
+    @Override
+    protected List<String> getPluginsList() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public Response updateStatus(String msg) throws Exception {
+        throw notSupported("Update Status");
+    }
+
+    @Override
+    public List<Contact> getContactList() throws Exception {
+        throw notSupported("Get Contact List");
+    }
+
+    @Override
+    public Response uploadImage(final String message, final String fileName, final InputStream inputStream) throws Exception {
+        throw notSupported("Upload Image");
+    }
+
+    private SocialAuthException notSupported(String action) {
+        LOGGER.warn("WARNING: Not implemented for Google");
+        return new SocialAuthException(format("%s is not implemented for Google", action));
+    }
+}
@@ -0,0 +1,152 @@
+package com.tw.go.plugin.provider.google;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.thoughtworks.go.plugin.api.logging.Logger;
+import com.tw.go.plugin.util.DaemonThreadFactory;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Google's token signing keys, kept for as long as the certs endpoint's Cache-Control allows and refreshed in the
+// background shortly before they expire, so verifying an id_token normally needs no network call at all.
+public class GoogleSigningKeys {
+    private static final Logger LOGGER = Logger.getLoggerFor(GoogleSigningKeys.class);
+    public static final String CERTS_URL = "https://www.googleapis.com/oauth2/v3/certs";
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+    private static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long MIN_REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(5);
+
+    private final String url;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("google-signing-keys"));
+    private volatile Keys keys;
+    private ScheduledFuture<?> refreshTask;
+    private int fetches;
+
+    public GoogleSigningKeys(String url) {
+        this.url = url;
+    }
+
+    public PublicKey get(String keyId) throws IOException {
+        Keys current = keys;
+        if (current == null || current.expiresAt < System.currentTimeMillis()) {
+            current = refresh(current);
+        }
+        PublicKey key = current.keys.get(keyId);
+        if (key == null && System.currentTimeMillis() - current.fetchedAt > MIN_REFRESH_INTERVAL_MILLIS) {
+            key = refresh(current).keys.get(keyId);
+        }
+        return key;
+    }
+
+    public synchronized int getFetches() {
+        return fetches;
+    }
+
+    private synchronized Keys refresh(Keys seen) throws IOException {
+        if (keys != seen) {
+            return keys;
+        }
+        Keys fetched = fetch();
+        keys = fetched;
+        fetches++;
+        scheduleRefresh(Math.max(MIN_REFRESH_INTERVAL_MILLIS, (fetched.expiresAt - fetched.fetchedAt) * 9 / 10));
+        return fetched;
+    }
+
+    // Replaces any pending refresh, so keys fetched on the request path do not pile up extra background refreshes.
+    private synchronized void scheduleRefresh(long delayMillis) {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+        }
+        refreshTask = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh(keys);
+                } catch (Exception e) {
+                    LOGGER.warn("Could not refresh Google signing keys", e);
+                    scheduleRefresh(MIN_REFRESH_INTERVAL_MILLIS);
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Keys fetch() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException(String.format("%s responded with %d", url, connection.getResponseCode()));
+            }
+            Map<String, PublicKey> publicKeys = new HashMap<String, PublicKey>();
+            try (InputStream inputStream = connection.getInputStream()) {
+                JsonObject jwks = new JsonParser().parse(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).getAsJsonObject();
+                for (JsonElement element : jwks.getAsJsonArray("keys")) {
+                    JsonObject key = element.getAsJsonObject();
+                    if (key.has("kid") && "RSA".equals(key.get("kty").getAsString())) {
+                        publicKeys.put(key.get("kid").getAsString(), rsaKey(key.get("n").getAsString(), key.get("e").getAsString()));
+                    }
+                }
+            }
+            long now = System.currentTimeMillis();
+            return new Keys(Collections.unmodifiableMap(publicKeys), now, now + maxAge(connection));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private long maxAge(HttpURLConnection connection) {
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            Matcher matcher = MAX_AGE.matcher(cacheControl);
+            if (matcher.find()) {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(matcher.group(1)));
+            }
+        }
+        long expires = connection.getExpiration();
+        return expires > System.currentTimeMillis() ? expires - System.currentTimeMillis() : DEFAULT_MAX_AGE_MILLIS;
+    }
+
+    private PublicKey rsaKey(String modulus, String exponent) throws IOException {
+        try {
+            return KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+                    new BigInteger(1, Base64.decodeBase64(modulus)), new BigInteger(1, Base64.decodeBase64(exponent))));
+        } catch (Exception e) {
+            throw new IOException("Invalid RSA key in Google signing keys", e);
+        }
+    }
+
+    private static class Keys {
+        private final Map<String, PublicKey> keys;
+        private final long fetchedAt;
+        private final long expiresAt;
+
+        private Keys(Map<String, PublicKey> keys, long fetchedAt, long expiresAt) {
+            this.keys = keys;
+            this.fetchedAt = fetchedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
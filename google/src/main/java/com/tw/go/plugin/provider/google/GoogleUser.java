@@ -0,0 +1,16 @@
+package com.tw.go.plugin.provider.google;
+
+import com.tw.go.plugin.User;
+
+public class GoogleUser extends User {
+    private final String hostedDomain;
+
+    public GoogleUser(String username, String displayName, String emailId, String hostedDomain) {
+        super(username, displayName, emailId);
+        this.hostedDomain = hostedDomain;
+    }
+
+    public String getHostedDomain() {
+        return hostedDomain;
+    }
+}
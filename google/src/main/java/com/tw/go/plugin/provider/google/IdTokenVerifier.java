@@ -0,0 +1,78 @@
+package com.tw.go.plugin.provider.google;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class IdTokenVerifier {
+    private static final Set<String> ISSUERS = new HashSet<String>(Arrays.asList("accounts.google.com", "https://accounts.google.com"));
+    private static final long CLOCK_SKEW_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+
+    private final GoogleSigningKeys signingKeys;
+
+    public IdTokenVerifier(GoogleSigningKeys signingKeys) {
+        this.signingKeys = signingKeys;
+    }
+
+    public JsonObject verify(String idToken, String clientId) throws GeneralSecurityException, IOException {
+        String[] parts = idToken.split("\\.");
+        if (parts.length != 3) {
+            throw new SignatureException("id_token is not a signed JWT");
+        }
+        JsonObject header = decode(parts[0]);
+        if (!"RS256".equals(string(header, "alg"))) {
+            throw new SignatureException(String.format("Unsupported id_token algorithm %s", string(header, "alg")));
+        }
+        PublicKey key = signingKeys.get(string(header, "kid"));
+        if (key == null) {
+            throw new SignatureException(String.format("Unknown id_token signing key %s", string(header, "kid")));
+        }
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initVerify(key);
+        signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+        if (!signature.verify(Base64.decodeBase64(parts[2]))) {
+            throw new SignatureException("id_token signature does not match");
+        }
+
+        JsonObject claims = decode(parts[1]);
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        if (!ISSUERS.contains(string(claims, "iss"))) {
+            throw new GeneralSecurityException(String.format("Unexpected id_token issuer %s", string(claims, "iss")));
+        }
+        if (clientId == null || !clientId.equals(string(claims, "aud"))) {
+            throw new GeneralSecurityException("id_token was issued to a different client");
+        }
+        if (!claims.has("exp") || claims.get("exp").getAsLong() + CLOCK_SKEW_SECONDS < now) {
+            throw new GeneralSecurityException("id_token has expired");
+        }
+        if (claims.has("iat") && claims.get("iat").getAsLong() - CLOCK_SKEW_SECONDS > now) {
+            throw new GeneralSecurityException("id_token was issued in the future");
+        }
+        return claims;
+    }
+
+    public static String string(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private JsonObject decode(String part) throws GeneralSecurityException {
+        try {
+            return new JsonParser().parse(new String(Base64.decodeBase64(part), StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (RuntimeException e) {
+            throw new SignatureException("id_token is not valid JSON", e);
+        }
+    }
+}
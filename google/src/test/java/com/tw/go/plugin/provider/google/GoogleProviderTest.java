@@ -20,6 +20,16 @@ public class GoogleProviderTest {
         assertTrue(new GoogleProvider().authorize(googlePluginSettings, new User("bob@bar.com", null, null)));
     }
 
+    @Test
+    public void authorizationWithAllowedHostedDomain() throws Exception {
+        GooglePluginSettings googlePluginSettings = new GooglePluginSettings();
+        googlePluginSettings.setAllowedDomains("foo.com");
+
+        assertTrue(new GoogleProvider().authorize(googlePluginSettings, new GoogleUser("bob@foo-alias.com", null, null, "foo.com")));
+        assertFalse(new GoogleProvider().authorize(googlePluginSettings, new GoogleUser("bob@foo-alias.com", null, null, "bar.com")));
+        assertFalse(new GoogleProvider().authorize(googlePluginSettings, new GoogleUser("bob@foo-alias.com", null, null, null)));
+    }
+
     @Test
     public void authorizationWithRegex() throws Exception {
         GooglePluginSettings googlePluginSettings = new GooglePluginSettings();
@@ -0,0 +1,128 @@
+package com.tw.go.plugin.provider.google;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class IdTokenVerifierTest {
+    private static final String CLIENT_ID = "client-id.apps.googleusercontent.com";
+
+    private HttpServer server;
+    private KeyPair keyPair;
+    private final AtomicInteger requests = new AtomicInteger();
+    private IdTokenVerifier verifier;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/certs", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+                byte[] body = String.format("{\"keys\":[{\"kid\":\"key-1\",\"kty\":\"RSA\",\"alg\":\"RS256\",\"n\":\"%s\",\"e\":\"%s\"}]}",
+                        encode(key.getModulus()), encode(key.getPublicExponent())).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Cache-Control", "public, max-age=3600, must-revalidate");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            }
+        });
+        server.start();
+        verifier = new IdTokenVerifier(new GoogleSigningKeys(String.format("http://127.0.0.1:%d/certs", server.getAddress().getPort())));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldVerifyTokensWithCachedSigningKeys() throws Exception {
+        String token = token("key-1", claims(CLIENT_ID, "accounts.google.com", now() + 3600));
+        for (int i = 0; i < 3; i++) {
+            JsonObject claims = verifier.verify(token, CLIENT_ID);
+            assertEquals("bob@example.com", IdTokenVerifier.string(claims, "email"));
+            assertEquals("example.com", IdTokenVerifier.string(claims, "hd"));
+        }
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void shouldRejectTokensThatDoNotCheckOut() throws Exception {
+        assertRejected(token("key-1", claims("someone-else", "accounts.google.com", now() + 3600)));
+        assertRejected(token("key-1", claims(CLIENT_ID, "https://evil.example.com", now() + 3600)));
+        assertRejected(token("key-1", claims(CLIENT_ID, "https://accounts.google.com", now() - 3600)));
+        assertRejected(token("unknown", claims(CLIENT_ID, "accounts.google.com", now() + 3600)));
+
+        String token = token("key-1", claims(CLIENT_ID, "accounts.google.com", now() + 3600));
+        String[] parts = token.split("\\.");
+        assertRejected(parts[0] + "." + encode(claims(CLIENT_ID, "accounts.google.com", now() + 7200).getBytes(StandardCharsets.UTF_8)) + "." + parts[2]);
+    }
+
+    private void assertRejected(String token) throws Exception {
+        try {
+            verifier.verify(token, CLIENT_ID);
+            fail("Expected id_token to be rejected");
+        } catch (GeneralSecurityException expected) {
+        }
+    }
+
+    private String claims(String audience, String issuer, long expiresAt) {
+        return String.format("{\"iss\":\"%s\",\"aud\":\"%s\",\"sub\":\"1234\",\"email\":\"bob@example.com\",\"email_verified\":true,\"hd\":\"example.com\",\"iat\":%d,\"exp\":%d}",
+                issuer, audience, now(), expiresAt);
+    }
+
+    private String token(String keyId, String claims) throws Exception {
+        String signed = encode(String.format("{\"alg\":\"RS256\",\"kid\":\"%s\",\"typ\":\"JWT\"}", keyId).getBytes(StandardCharsets.UTF_8))
+                + "." + encode(claims.getBytes(StandardCharsets.UTF_8));
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(signed.getBytes(StandardCharsets.US_ASCII));
+        return signed + "." + encode(signature.sign());
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static String encode(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes[0] == 0) {
+            byte[] unsigned = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+            bytes = unsigned;
+        }
+        return encode(bytes);
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.encodeBase64URLSafeString(bytes);
+    }
+}